@@ -0,0 +1,25 @@
+package top.yanquithor.framework.dddbase.common.domain.model;
+
+import java.util.Set;
+
+/**
+ * Implemented by aggregates that record which of their properties changed since they were loaded.
+ * Repositories then write only the changed columns, and skip the write when nothing changed.
+ * <p>
+ * For optimistic locking, the aggregate should carry the version of its data object
+ * (the {@code @Version} field) so that it survives the round trip through the converter.
+ */
+public interface DirtyTracking {
+    
+    /**
+     * @return Names of the properties changed since loading or the last successful write,
+     * matching the property names of the data object
+     */
+    Set<String> dirtyFields();
+    
+    /**
+     * Called by the repository once the changes are written, or once they are committed when the write
+     * runs inside a transaction.
+     */
+    void clearDirtyFields();
+}
@@ -2,14 +2,102 @@ package top.yanquithor.framework.dddbase.common.domain.repository;
 
 import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 public interface BaseRepository <DOMAIN extends Aggregate> {
     DOMAIN save(DOMAIN domain);
     
+    /**
+     * Saves several aggregates. The default saves them one by one.
+     *
+     * @param domains Aggregates to save
+     * @return Saved aggregates in input order
+     */
+    default List<DOMAIN> saveAll(Collection<DOMAIN> domains) {
+        List<DOMAIN> saved = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            saved.add(save(domain));
+        }
+        return saved;
+    }
+    
     Long count(DOMAIN domain);
     
+    /**
+     * Counts aggregates matching the probe, trading accuracy for speed as the mode allows.
+     * The default always counts exactly.
+     *
+     * @param domain Aggregate whose non-null fields are used as equality filters, null to count everything
+     * @param mode   How to obtain the count
+     * @return Count, labelled with how it was actually obtained
+     */
+    default CountResult count(DOMAIN domain, CountMode mode) {
+        return new CountResult(count(domain), CountMode.EXACT, Instant.now());
+    }
+    
     DOMAIN update(DOMAIN domain);
     
+    /**
+     * Updates several aggregates. The default updates them one by one.
+     *
+     * @param domains Aggregates to update
+     * @return Updated aggregates in input order
+     */
+    default List<DOMAIN> updateAll(Collection<DOMAIN> domains) {
+        List<DOMAIN> updated = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            updated.add(update(domain));
+        }
+        return updated;
+    }
+    
     DOMAIN delete(DOMAIN domain);
     
+    /**
+     * Soft-deletes several aggregates at once. The default loads and deletes them one by one.
+     *
+     * @param ids Ids to delete
+     * @return Number of rows marked as deleted
+     */
+    default long deleteByIds(Collection<Long> ids) {
+        long deleted = 0;
+        for (Long id : ids) {
+            DOMAIN domain = getById(id);
+            if (domain != null) {
+                delete(domain);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+    
     DOMAIN getById(long id);
+    
+    /**
+     * Loads several aggregates at once. The default loads them one by one.
+     *
+     * @param ids Ids to load
+     * @return One element per requested id in request order, null where no aggregate exists
+     */
+    default List<DOMAIN> getByIds(Collection<Long> ids) {
+        List<DOMAIN> domains = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            domains.add(getById(id));
+        }
+        return domains;
+    }
+    
+    /**
+     * Walks all aggregates matching the probe in id order, fetching {@code batchSize} rows at a time.
+     * Memory use depends on the batch size only, not on the table size. Close the stream when done.
+     *
+     * @param probe     Aggregate whose non-null fields are used as equality filters, null to scan everything
+     * @param batchSize Rows fetched per query
+     * @return Lazily populated stream of aggregates
+     */
+    Stream<DOMAIN> scan(DOMAIN probe, int batchSize);
 }
@@ -0,0 +1,23 @@
+package top.yanquithor.framework.dddbase.common.domain.repository;
+
+/**
+ * How {@link BaseRepository#count(top.yanquithor.framework.dddbase.common.domain.model.Aggregate, CountMode)} obtains a row count, and how a {@link CountResult} was obtained.
+ */
+public enum CountMode {
+    
+    /**
+     * {@code SELECT COUNT(*)} against the live table.
+     */
+    EXACT,
+    
+    /**
+     * An exact count remembered for a while, never older than the repository's staleness bound.
+     */
+    CACHED,
+    
+    /**
+     * Planner statistics or catalog figures; cheap, but may be off by a margin.
+     * Falls back to an exact count where the database keeps no usable statistics.
+     */
+    ESTIMATED
+}
@@ -0,0 +1,21 @@
+package top.yanquithor.framework.dddbase.common.domain.repository;
+
+import java.time.Instant;
+
+/**
+ * Row count together with how it was obtained.
+ *
+ * @param value      Number of rows
+ * @param mode       {@link CountMode#EXACT} for a live count, {@link CountMode#CACHED} for a remembered exact count,
+ *                   {@link CountMode#ESTIMATED} for a statistics-based figure
+ * @param measuredAt When the count was taken
+ */
+public record CountResult(long value, CountMode mode, Instant measuredAt) {
+    
+    /**
+     * @return False if the value comes from statistics rather than an actual count
+     */
+    public boolean exact() {
+        return mode != CountMode.ESTIMATED;
+    }
+}
@@ -0,0 +1,35 @@
+package top.yanquithor.framework.dddbase.common.domain.service;
+
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link DomainService}: every call returns at once and completes on another thread.
+ */
+public interface AsyncDomainService<DOMAIN extends Aggregate> {
+    
+    CompletableFuture<DOMAIN> create(DOMAIN domain);
+    
+    CompletableFuture<List<DOMAIN>> createAll(Collection<DOMAIN> domains);
+    
+    CompletableFuture<Long> count(DOMAIN domain);
+    
+    CompletableFuture<DOMAIN> update(DOMAIN domain);
+    
+    CompletableFuture<List<DOMAIN>> updateAll(Collection<DOMAIN> domains);
+    
+    CompletableFuture<DOMAIN> delete(DOMAIN domain);
+    
+    CompletableFuture<DOMAIN> getById(long id);
+    
+    /**
+     * Loads the aggregates with one batched lookup, which runs under a single bulkhead permit.
+     *
+     * @param ids Ids to load
+     * @return One element per requested id in request order, null where no aggregate exists
+     */
+    CompletableFuture<List<DOMAIN>> getByIds(Collection<Long> ids);
+}
@@ -2,15 +2,61 @@ package top.yanquithor.framework.dddbase.common.domain.service;
 
 import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public interface DomainService<DOMAIN extends Aggregate> {
     
     DOMAIN create(DOMAIN domain);
     
+    /**
+     * Creates several aggregates. The default creates them one by one.
+     *
+     * @param domains Aggregates to create
+     * @return Created aggregates in input order
+     */
+    default List<DOMAIN> createAll(Collection<DOMAIN> domains) {
+        List<DOMAIN> created = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            created.add(create(domain));
+        }
+        return created;
+    }
+    
     Long count(DOMAIN domain);
     
     DOMAIN update(DOMAIN domain);
     
+    /**
+     * Updates several aggregates. The default updates them one by one.
+     *
+     * @param domains Aggregates to update
+     * @return Updated aggregates in input order
+     */
+    default List<DOMAIN> updateAll(Collection<DOMAIN> domains) {
+        List<DOMAIN> updated = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            updated.add(update(domain));
+        }
+        return updated;
+    }
+    
     DOMAIN delete(DOMAIN domain);
     
     DOMAIN getById(long id);
+    
+    /**
+     * Loads several aggregates. The default loads them one by one.
+     *
+     * @param ids Ids to load
+     * @return One element per requested id in request order, null where no aggregate exists
+     */
+    default List<DOMAIN> getByIds(Collection<Long> ids) {
+        List<DOMAIN> domains = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            domains.add(id == null ? null : getById(id));
+        }
+        return domains;
+    }
 }
@@ -3,9 +3,29 @@ package top.yanquithor.framework.dddbase.common.infrastructure.converter;
 import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dataobject.BaseDO;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public interface BaseConverter<DO extends BaseDO, DOMAIN extends Aggregate> {
     
      DO toDO(DOMAIN domain);
      
      DOMAIN toDomain(DO doo);
+     
+     default List<DO> toDOs(Collection<? extends DOMAIN> domains) {
+          List<DO> dos = new ArrayList<>(domains.size());
+          for (DOMAIN domain : domains) {
+               dos.add(toDO(domain));
+          }
+          return dos;
+     }
+     
+     default List<DOMAIN> toDomains(Collection<? extends DO> dos) {
+          List<DOMAIN> domains = new ArrayList<>(dos.size());
+          for (DO doo : dos) {
+               domains.add(toDomain(doo));
+          }
+          return domains;
+     }
 }
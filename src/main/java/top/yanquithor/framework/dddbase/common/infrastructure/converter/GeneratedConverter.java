@@ -0,0 +1,65 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.converter;
+
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dataobject.BaseDO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Converter generated at runtime instead of written by hand: properties with the same name and a
+ * compatible type are copied in both directions through {@link java.lang.invoke.LambdaMetafactory}
+ * accessors, avoiding the reflective lookups of generic mappers. Build it once per type pair and reuse it.
+ * <pre>{@code
+ * BaseConverter<UserDO, User> converter = GeneratedConverter.of(UserDO.class, User.class);
+ * }</pre>
+ *
+ * @param <DO>     Data object type
+ * @param <DOMAIN> Aggregate type
+ */
+public final class GeneratedConverter<DO extends BaseDO, DOMAIN extends Aggregate> implements BaseConverter<DO, DOMAIN> {
+    
+    private final PropertyMapping<DOMAIN, DO> toDO;
+    private final PropertyMapping<DO, DOMAIN> toDomain;
+    
+    private GeneratedConverter(Class<DO> doClass, Class<DOMAIN> domainClass) {
+        this.toDO = PropertyMapping.of(domainClass, doClass);
+        this.toDomain = PropertyMapping.of(doClass, domainClass);
+    }
+    
+    /**
+     * @throws IllegalStateException If accessors cannot be generated, e.g. no no-arg constructor on a bean target
+     */
+    public static <DO extends BaseDO, DOMAIN extends Aggregate> GeneratedConverter<DO, DOMAIN> of(Class<DO> doClass, Class<DOMAIN> domainClass) {
+        return new GeneratedConverter<>(doClass, domainClass);
+    }
+    
+    @Override
+    public DO toDO(DOMAIN domain) {
+        return toDO.copy(domain);
+    }
+    
+    @Override
+    public DOMAIN toDomain(DO doo) {
+        return toDomain.copy(doo);
+    }
+    
+    @Override
+    public List<DO> toDOs(Collection<? extends DOMAIN> domains) {
+        List<DO> dos = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            dos.add(toDO.copy(domain));
+        }
+        return dos;
+    }
+    
+    @Override
+    public List<DOMAIN> toDomains(Collection<? extends DO> dos) {
+        List<DOMAIN> domains = new ArrayList<>(dos.size());
+        for (DO doo : dos) {
+            domains.add(toDomain.copy(doo));
+        }
+        return domains;
+    }
+}
@@ -0,0 +1,307 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.converter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Copies same-named, type-compatible properties from one class to another through functions spun up
+ * once with {@link LambdaMetafactory}, so each copy is a series of interface calls instead of reflective
+ * invocations. That is several times faster than reflective copying, though still slower than hand-written
+ * accessor calls, which the JIT can inline.
+ * Sources may be beans or records; targets may be beans with a no-arg constructor and setters
+ * (fluent setters are fine) or records built through their canonical constructor.
+ * <p>
+ * Of overloaded setters, the one taking exactly the getter's return type wins over merely compatible ones.
+ * Accessors that cannot be spun, e.g. because the classes live in a class loader or module the framework
+ * cannot look into, fall back to plain reflection.
+ *
+ * @param <S> Source type
+ * @param <T> Target type
+ */
+@Slf4j
+final class PropertyMapping<S, T> {
+    
+    private final Supplier<Object> constructor; // Bean targets
+    private final BiConsumer<Object, Object>[] setters;
+    private final Function<Object, Object>[] setterSources;
+    private final boolean[] primitiveTargets;
+    private final Function<Object[], Object> recordConstructor; // Record targets
+    private final Function<Object, Object>[] componentSources;
+    private final Object[] componentDefaults;
+    
+    private PropertyMapping(Class<S> source, Class<T> target) throws ReflectiveOperationException {
+        Map<String, Method> getters = getters(source);
+        
+        if (target.isRecord()) {
+            RecordComponent[] components = target.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            componentSources = functions(components.length);
+            componentDefaults = new Object[components.length];
+            for (int i = 0; i < components.length; i++) {
+                types[i] = components[i].getType();
+                Method getter = getters.get(components[i].getName());
+                if (getter != null && compatible(getter.getReturnType(), types[i])) {
+                    componentSources[i] = getterFunction(getter);
+                }
+                componentDefaults[i] = types[i].isPrimitive() ? Array.get(Array.newInstance(types[i], 1), 0) : null;
+            }
+            recordConstructor = recordFactory(target.getDeclaredConstructor(types));
+            constructor = null;
+            setters = null;
+            setterSources = null;
+            primitiveTargets = null;
+            return;
+        }
+        
+        constructor = beanFactory(target.getDeclaredConstructor());
+        List<BiConsumer<Object, Object>> setterList = new ArrayList<>();
+        List<Function<Object, Object>> sourceList = new ArrayList<>();
+        List<Boolean> primitives = new ArrayList<>();
+        for (Map.Entry<String, List<Method>> candidates : setters(target).entrySet()) {
+            Method getter = getters.get(candidates.getKey());
+            if (getter == null) {
+                continue;
+            }
+            Method setter = pickSetter(candidates.getValue(), getter.getReturnType());
+            if (setter == null) {
+                continue;
+            }
+            Class<?> type = setter.getParameterTypes()[0];
+            setterList.add(setterFunction(target, setter));
+            sourceList.add(getterFunction(getter));
+            primitives.add(type.isPrimitive());
+        }
+        setters = setterList.toArray(consumers(0));
+        setterSources = sourceList.toArray(functions(0));
+        primitiveTargets = new boolean[primitives.size()];
+        for (int i = 0; i < primitiveTargets.length; i++) {
+            primitiveTargets[i] = primitives.get(i);
+        }
+        recordConstructor = null;
+        componentSources = null;
+        componentDefaults = null;
+    }
+    
+    static <S, T> PropertyMapping<S, T> of(Class<S> source, Class<T> target) {
+        try {
+            return new PropertyMapping<>(source, target);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException(String.format("Cannot generate mapping from %s to %s",
+                    source.getName(), target.getName()), e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    T copy(S source) {
+        if (source == null) {
+            return null;
+        }
+        if (recordConstructor != null) {
+            Object[] arguments = new Object[componentSources.length];
+            for (int i = 0; i < arguments.length; i++) {
+                Object value = componentSources[i] == null ? null : componentSources[i].apply(source);
+                arguments[i] = value == null ? componentDefaults[i] : value;
+            }
+            return (T) recordConstructor.apply(arguments);
+        }
+        Object target = constructor.get();
+        for (int i = 0; i < setters.length; i++) {
+            Object value = setterSources[i].apply(source);
+            if (value != null || !primitiveTargets[i]) {
+                setters[i].accept(target, value);
+            }
+        }
+        return (T) target;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getterFunction(Method getter) {
+        Class<?> owner = getter.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            return (Function<Object, Object>) spin(lookup, Function.class, "apply",
+                    MethodType.methodType(Object.class, Object.class), lookup.unreflect(getter),
+                    MethodType.methodType(wrap(getter.getReturnType()), owner));
+        } catch (Throwable e) {
+            fallingBack(getter, e);
+        }
+        getter.trySetAccessible();
+        return source -> invoke(getter, source);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setterFunction(Class<?> target, Method setter) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+            return (BiConsumer<Object, Object>) spin(lookup, BiConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, Object.class), lookup.unreflect(setter),
+                    MethodType.methodType(void.class, target, wrap(setter.getParameterTypes()[0])));
+        } catch (Throwable e) {
+            fallingBack(setter, e);
+        }
+        setter.trySetAccessible();
+        return (bean, value) -> invoke(setter, bean, value);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> beanFactory(Constructor<?> noArgs) {
+        Class<?> target = noArgs.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+            return (Supplier<Object>) spin(lookup, Supplier.class, "get", MethodType.methodType(Object.class),
+                    lookup.unreflectConstructor(noArgs), MethodType.methodType(target));
+        } catch (Throwable e) {
+            fallingBack(noArgs, e);
+        }
+        noArgs.trySetAccessible();
+        return () -> newInstance(noArgs);
+    }
+    
+    private static Function<Object[], Object> recordFactory(Constructor<?> canonical) {
+        try {
+            MethodHandle handle = MethodHandles.privateLookupIn(canonical.getDeclaringClass(), MethodHandles.lookup())
+                    .unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, canonical.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            return arguments -> {
+                try {
+                    return handle.invokeExact(arguments);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Cannot construct record", e);
+                }
+            };
+        } catch (IllegalAccessException | RuntimeException e) {
+            fallingBack(canonical, e);
+        }
+        canonical.trySetAccessible();
+        return arguments -> newInstance(canonical, arguments);
+    }
+    
+    private static Object spin(MethodHandles.Lookup lookup, Class<?> functionalInterface, String method,
+                               MethodType erasedType, MethodHandle implementation, MethodType instantiatedType) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(lookup, method, MethodType.methodType(functionalInterface),
+                erasedType, implementation, instantiatedType);
+        return site.getTarget().invoke();
+    }
+    
+    private static void fallingBack(Object member, Throwable cause) {
+        if (cause instanceof VirtualMachineError error) {
+            throw error;
+        }
+        log.debug("Cannot generate accessor for {}, using reflection", member, cause);
+    }
+    
+    private static Object invoke(Method method, Object target, Object... arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Accessor " + method + " failed", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access " + method, e);
+        }
+    }
+    
+    private static Object newInstance(Constructor<?> constructor, Object... arguments) {
+        try {
+            return constructor.newInstance(arguments);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Constructor " + constructor + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot construct " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object>[] functions(int length) {
+        return (Function<Object, Object>[]) new Function<?, ?>[length];
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object>[] consumers(int length) {
+        return (BiConsumer<Object, Object>[]) new BiConsumer<?, ?>[length];
+    }
+    
+    private static Map<String, Method> getters(Class<?> type) {
+        Map<String, Method> getters = new LinkedHashMap<>();
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                getters.put(component.getName(), component.getAccessor());
+            }
+            return getters;
+        }
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                    || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3) {
+                getters.putIfAbsent(propertyName(name, 3), method);
+            } else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+                getters.putIfAbsent(propertyName(name, 2), method);
+            }
+        }
+        return getters;
+    }
+    
+    /**
+     * @return Setter candidates by property name, overloads included
+     */
+    private static Map<String, List<Method>> setters(Class<?> type) {
+        Map<String, List<Method>> setters = new LinkedHashMap<>();
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1
+                    && method.getName().startsWith("set") && method.getName().length() > 3 && !method.isBridge()) {
+                setters.computeIfAbsent(propertyName(method.getName(), 3), name -> new ArrayList<>()).add(method);
+            }
+        }
+        return setters;
+    }
+    
+    /**
+     * @return The overload taking exactly the property type, else the first compatible one, else null
+     */
+    private static Method pickSetter(List<Method> candidates, Class<?> propertyType) {
+        Method compatible = null;
+        for (Method candidate : candidates) {
+            Class<?> parameter = candidate.getParameterTypes()[0];
+            if (parameter == propertyType) {
+                return candidate;
+            }
+            if (compatible == null && compatible(propertyType, parameter)) {
+                compatible = candidate;
+            }
+        }
+        return compatible;
+    }
+    
+    private static String propertyName(String accessor, int prefixLength) {
+        return Character.toLowerCase(accessor.charAt(prefixLength)) + accessor.substring(prefixLength + 1);
+    }
+    
+    private static boolean compatible(Class<?> from, Class<?> to) {
+        return wrap(from) == wrap(to) || (!to.isPrimitive() && to.isAssignableFrom(from));
+    }
+    
+    private static Class<?> wrap(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+}
@@ -0,0 +1,172 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+import top.yanquithor.framework.dddbase.common.domain.service.AsyncDomainService;
+import top.yanquithor.framework.dddbase.common.domain.service.DomainService;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing.RoutingContext;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs each {@link DomainService} call on its own virtual thread behind a bulkhead.
+ * Virtual threads are cheap enough to start thousands, but every call still needs a JDBC connection;
+ * the bulkhead lets at most {@code maxConcurrency} calls reach the pool and parks the rest,
+ * so size it to the connection pool (e.g. {@code spring.datasource.hikari.maximum-pool-size}).
+ */
+@Slf4j
+public class AsyncDomainServiceImpl<DOMAIN extends Aggregate> implements AsyncDomainService<DOMAIN>, AutoCloseable {
+    
+    private final DomainService<DOMAIN> delegate;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("domain-async-", 0).factory());
+    private final int maxConcurrency;
+    private final Semaphore bulkhead;
+    private final long acquireTimeoutNanos; // 0 waits for a permit indefinitely
+    
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    
+    /**
+     * @param delegate       Blocking domain service
+     * @param maxConcurrency Calls allowed to run at once, normally the JDBC pool size
+     */
+    public AsyncDomainServiceImpl(DomainService<DOMAIN> delegate, int maxConcurrency) {
+        this(delegate, maxConcurrency, Duration.ZERO);
+    }
+    
+    /**
+     * @param delegate       Blocking domain service
+     * @param maxConcurrency Calls allowed to run at once, normally the JDBC pool size
+     * @param acquireTimeout How long a call may wait for a permit before failing with
+     *                       {@link RejectedExecutionException}, zero to wait indefinitely
+     */
+    public AsyncDomainServiceImpl(DomainService<DOMAIN> delegate, int maxConcurrency, Duration acquireTimeout) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("max concurrency must be greater than 0");
+        }
+        if (acquireTimeout.isNegative()) {
+            throw new IllegalArgumentException("acquire timeout must not be negative");
+        }
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.bulkhead = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+    
+    @Override
+    public CompletableFuture<DOMAIN> create(DOMAIN domain) {
+        return submit(() -> delegate.create(domain));
+    }
+    
+    @Override
+    public CompletableFuture<List<DOMAIN>> createAll(Collection<DOMAIN> domains) {
+        return submit(() -> delegate.createAll(domains));
+    }
+    
+    @Override
+    public CompletableFuture<Long> count(DOMAIN domain) {
+        return submit(() -> delegate.count(domain));
+    }
+    
+    @Override
+    public CompletableFuture<DOMAIN> update(DOMAIN domain) {
+        return submit(() -> delegate.update(domain));
+    }
+    
+    @Override
+    public CompletableFuture<List<DOMAIN>> updateAll(Collection<DOMAIN> domains) {
+        return submit(() -> delegate.updateAll(domains));
+    }
+    
+    @Override
+    public CompletableFuture<DOMAIN> delete(DOMAIN domain) {
+        return submit(() -> delegate.delete(domain));
+    }
+    
+    @Override
+    public CompletableFuture<DOMAIN> getById(long id) {
+        return submit(() -> delegate.getById(id));
+    }
+    
+    @Override
+    public CompletableFuture<List<DOMAIN>> getByIds(Collection<Long> ids) {
+        return submit(() -> delegate.getByIds(ids));
+    }
+    
+    /**
+     * Runs the call on a fresh virtual thread once a bulkhead permit is free,
+     * with the caller's read/write routing state.
+     */
+    protected <T> CompletableFuture<T> submit(Supplier<T> call) {
+        RoutingContext.Snapshot context = RoutingContext.capture();
+        return CompletableFuture.supplyAsync(() -> {
+            acquire();
+            try {
+                return context.call(call);
+            } finally {
+                bulkhead.release();
+            }
+        }, executor);
+    }
+    
+    private void acquire() {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (acquireTimeoutNanos == 0) {
+                bulkhead.acquire();
+            } else if (!bulkhead.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new RejectedExecutionException(String.format(
+                        "No bulkhead permit within %d ms, %d calls waiting",
+                        TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos), waiting.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new CompletionException(e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+    
+    /**
+     * @return Current concurrency, queue depth and permit wait times of the bulkhead
+     */
+    public BulkheadStats stats() {
+        long count = acquired.sum();
+        return new BulkheadStats(maxConcurrency, maxConcurrency - bulkhead.availablePermits(), waiting.get(),
+                count, rejected.sum(), Duration.ofNanos(count == 0 ? 0 : totalWaitNanos.sum() / count),
+                Duration.ofNanos(maxWaitNanos.get()));
+    }
+    
+    /**
+     * Stops accepting calls and waits for the running ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+        log.debug("async domain service closed, {}", stats());
+    }
+}
@@ -0,0 +1,18 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time view of an {@link AsyncDomainServiceImpl} bulkhead.
+ *
+ * @param maxConcurrency Calls allowed to run at once
+ * @param inFlight       Calls currently running
+ * @param queueDepth     Calls waiting for a permit
+ * @param acquired       Calls that obtained a permit so far
+ * @param rejected       Calls that gave up waiting
+ * @param averageWait    Mean time spent waiting for a permit
+ * @param maxWait        Longest time spent waiting for a permit
+ */
+public record BulkheadStats(int maxConcurrency, int inFlight, int queueDepth, long acquired, long rejected,
+                            Duration averageWait, Duration maxWait) {
+}
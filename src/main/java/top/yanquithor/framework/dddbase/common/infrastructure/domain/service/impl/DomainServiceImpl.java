@@ -1,49 +1,126 @@
 package top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl;
 
-import com.alibaba.fastjson2.JSON;
 import lombok.extern.slf4j.Slf4j;
 import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
 import top.yanquithor.framework.dddbase.common.domain.repository.BaseRepository;
 import top.yanquithor.framework.dddbase.common.domain.service.DomainService;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.mapper.BaseMapperX;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository.CommonRepository;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository.WriteBehindBuffer;
+import top.yanquithor.framework.dddbase.common.infrastructure.trace.PersistenceTracer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 public class DomainServiceImpl<DOMAIN extends Aggregate> implements DomainService<DOMAIN> {
     
+    private static final PersistenceTracer TRACER = PersistenceTracer.of(DomainServiceImpl.class);
+    
     private BaseRepository<DOMAIN> repository;
+    // Opt-in write-behind for update, null when updates are written immediately
+    private WriteBehindBuffer<DOMAIN> writeBehind;
     
     public DomainServiceImpl(CommonRepository<?, DOMAIN, ? extends BaseMapperX<?>> repository) {
         this.repository = repository;
     }
     
+    /**
+     * Routes {@link #update} and {@link #updateAll} through a write-behind buffer, which coalesces repeated
+     * updates of an aggregate and writes them in batches. {@link #getById} sees buffered updates, {@link #delete} drops them.
+     * The buffer's lifecycle, including the flush on shutdown, stays with the caller.
+     *
+     * @param writeBehind Buffer over this service's repository, or null to write updates immediately
+     */
+    public void setWriteBehind(WriteBehindBuffer<DOMAIN> writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+    
     @Override
     public DOMAIN create(DOMAIN domain) {
-        log.debug("create {} and save to database", JSON.toJSONString(domain));
+        if (TRACER.enabled()) {
+            TRACER.trace("create {} and save to database", domain);
+        }
         return repository.save(domain);
     }
     
+    @Override
+    public List<DOMAIN> createAll(Collection<DOMAIN> domains) {
+        log.debug("create {} aggregates and save to database", domains.size());
+        return repository.saveAll(domains);
+    }
+    
     @Override
     public Long count(DOMAIN domain) {
-        log.debug("query param: {}", JSON.toJSONString(domain));
+        if (TRACER.enabled()) {
+            TRACER.trace("query param: {}", domain);
+        }
         return repository.count(domain);
     }
     
     @Override
     public DOMAIN update(DOMAIN domain) {
-        log.debug("update {} and save to database", JSON.toJSONString(domain));
-        return repository.update(domain);
+        if (TRACER.enabled()) {
+            TRACER.trace("update {} and save to database", domain);
+        }
+        return writeBehind != null ? writeBehind.update(domain) : repository.update(domain);
+    }
+    
+    /**
+     * Goes through the write-behind buffer like {@link #update}, if one is set, so that an older buffered
+     * update cannot be flushed after this one and overwrite it.
+     */
+    @Override
+    public List<DOMAIN> updateAll(Collection<DOMAIN> domains) {
+        log.debug("update {} aggregates and save to database", domains.size());
+        if (writeBehind == null) {
+            return repository.updateAll(domains);
+        }
+        List<DOMAIN> updated = new ArrayList<>(domains.size());
+        for (DOMAIN domain : domains) {
+            updated.add(writeBehind.update(domain));
+        }
+        return updated;
     }
     
     @Override
     public DOMAIN delete(DOMAIN domain) {
-        log.debug("delete {} and save to database", JSON.toJSONString(domain));
+        if (TRACER.enabled()) {
+            TRACER.trace("delete {} and save to database", domain);
+        }
+        if (writeBehind != null && domain != null) {
+            writeBehind.discard(domain);
+        }
         return repository.delete(domain);
     }
     
     @Override
     public DOMAIN getById(long id) {
         log.debug("get {} by id", id);
+        if (writeBehind != null) {
+            DOMAIN buffered = writeBehind.peek(id);
+            if (buffered != null) {
+                return buffered;
+            }
+        }
         return repository.getById(id);
     }
+    
+    @Override
+    public List<DOMAIN> getByIds(Collection<Long> ids) {
+        log.debug("get {} aggregates by id", ids.size());
+        List<DOMAIN> domains = repository.getByIds(ids);
+        if (writeBehind != null) {
+            int i = 0;
+            for (Long id : ids) {
+                DOMAIN buffered = id == null ? null : writeBehind.peek(id);
+                if (buffered != null) {
+                    domains.set(i, buffered);
+                }
+                i++;
+            }
+        }
+        return domains;
+    }
 }
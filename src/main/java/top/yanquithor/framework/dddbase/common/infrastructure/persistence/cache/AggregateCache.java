@@ -0,0 +1,65 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Read-through cache of converted aggregates, keyed by id.
+ * Cached aggregates are shared between callers, so they must not be mutated after being handed out.
+ *
+ * @param <DOMAIN> Aggregate type
+ */
+public interface AggregateCache<DOMAIN extends Aggregate> {
+    
+    /**
+     * Returns the cached aggregate, loading and caching it on a miss.
+     *
+     * @param id     Aggregate id
+     * @param loader Loads the aggregate from the database, may return null which is not cached
+     * @return Aggregate or null
+     */
+    DOMAIN get(long id, LongFunction<DOMAIN> loader);
+    
+    /**
+     * @param ids Aggregate ids
+     * @return Cached aggregates among {@code ids}, misses are left out
+     */
+    Map<Long, DOMAIN> getAllPresent(Collection<Long> ids);
+    
+    void put(long id, DOMAIN domain);
+    
+    /**
+     * @return Stamp to take before loading aggregates outside {@link #get}, see {@link #putIfNotInvalidatedSince}
+     */
+    default long stamp() {
+        return 0;
+    }
+    
+    /**
+     * Caches an aggregate loaded outside {@link #get}, unless its id was invalidated after the stamp was
+     * taken; the loaded state may then predate the write that caused the invalidation.
+     *
+     * @param id     Aggregate id
+     * @param domain Aggregate loaded after taking the stamp
+     * @param stamp  Result of {@link #stamp()} before loading
+     * @return True if the aggregate was cached
+     */
+    default boolean putIfNotInvalidatedSince(long id, DOMAIN domain, long stamp) {
+        put(id, domain);
+        return true;
+    }
+    
+    
+    /**
+     * Drops the cached aggregate. Inside a transaction, implementations drop it again after commit,
+     * so readers that reloaded the uncommitted state in between do not leave stale entries behind.
+     */
+    void invalidate(long id);
+    
+    void invalidateAll();
+    
+    AggregateCacheStats stats();
+}
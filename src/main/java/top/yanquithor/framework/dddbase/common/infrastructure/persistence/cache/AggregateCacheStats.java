@@ -0,0 +1,17 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+/**
+ * Point-in-time statistics of an {@link AggregateCache}.
+ *
+ * @param hitCount       Lookups served from the cache
+ * @param missCount      Lookups that went to the loader
+ * @param evictionCount  Entries removed by size or expiry
+ * @param estimatedSize  Approximate number of cached entries
+ */
+public record AggregateCacheStats(long hitCount, long missCount, long evictionCount, long estimatedSize) {
+    
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
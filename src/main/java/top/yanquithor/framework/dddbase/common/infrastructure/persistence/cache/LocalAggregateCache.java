@@ -0,0 +1,184 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-process aggregate cache on Caffeine, whose W-TinyLFU policy keeps frequently read aggregates
+ * over recently but rarely read ones. Size is bounded by entry count or by a weigher, and every
+ * aggregate can get its own time to live.
+ * <p>
+ * Invalidations are stamped per id stripe, so that aggregates loaded before a concurrent invalidation are
+ * not cached by {@link #putIfNotInvalidatedSince}. Inside a transaction an invalidation is repeated
+ * once the transaction completes, so neither its uncommitted nor its rolled-back state outlives it.
+ *
+ * @param <DOMAIN> Aggregate type
+ */
+public class LocalAggregateCache<DOMAIN extends Aggregate> implements AggregateCache<DOMAIN> {
+    
+    private static final int STAMP_STRIPES = 4096; // Power of two
+    
+    private final Cache<Long, DOMAIN> cache;
+    private final AtomicLong clock = new AtomicLong();
+    // Clock value of the latest invalidation per id stripe, and of the latest invalidateAll
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(STAMP_STRIPES);
+    private final AtomicLong allInvalidatedAt = new AtomicLong();
+    
+    private LocalAggregateCache(Builder<DOMAIN> builder) {
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder().recordStats();
+        if (builder.weigher != null) {
+            ToIntFunction<DOMAIN> weigher = builder.weigher;
+            caffeine.maximumWeight(builder.maximumWeight)
+                    .weigher((Long id, DOMAIN domain) -> weigher.applyAsInt(domain));
+        } else {
+            caffeine.maximumSize(builder.maximumSize);
+        }
+        Function<DOMAIN, Duration> ttl = builder.ttl;
+        this.cache = caffeine.expireAfter(Expiry.<Long, DOMAIN>writing((id, domain) -> ttl.apply(domain))).build();
+    }
+    
+    public static <DOMAIN extends Aggregate> Builder<DOMAIN> builder() {
+        return new Builder<>();
+    }
+    
+    @Override
+    public DOMAIN get(long id, LongFunction<DOMAIN> loader) {
+        return cache.get(id, loader::apply);
+    }
+    
+    @Override
+    public Map<Long, DOMAIN> getAllPresent(Collection<Long> ids) {
+        return cache.getAllPresent(ids);
+    }
+    
+    @Override
+    public void put(long id, DOMAIN domain) {
+        if (domain == null) {
+            cache.invalidate(id);
+        } else {
+            cache.put(id, domain);
+        }
+    }
+    
+    @Override
+    public long stamp() {
+        return clock.get();
+    }
+    
+    @Override
+    public boolean putIfNotInvalidatedSince(long id, DOMAIN domain, long stamp) {
+        if (domain == null) {
+            return false;
+        }
+        boolean[] cached = new boolean[1];
+        // Runs under the entry's lock, so an invalidation either stamps before this check or removes after it
+        cache.asMap().compute(id, (key, present) -> {
+            if (invalidatedSince(id, stamp)) {
+                return present;
+            }
+            cached[0] = true;
+            return domain;
+        });
+        return cached[0];
+    }
+    
+    /**
+     * @return True if the id, or the whole cache, was invalidated after the stamp was taken
+     */
+    boolean invalidatedSince(long id, long stamp) {
+        return invalidatedAt.get(stripe(id)) > stamp || allInvalidatedAt.get() > stamp;
+    }
+    
+    @Override
+    public void invalidate(long id) {
+        discard(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // Also on rollback: the transaction may have read its own writes back into the cache
+                    discard(id);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Invalidates right away only, for callers that repeat the invalidation after completion themselves.
+     */
+    void discard(long id) {
+        invalidatedAt.set(stripe(id), clock.incrementAndGet());
+        cache.invalidate(id);
+    }
+    
+    @Override
+    public void invalidateAll() {
+        allInvalidatedAt.set(clock.incrementAndGet());
+        cache.invalidateAll();
+    }
+    
+    private static int stripe(long id) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (STAMP_STRIPES - 1);
+    }
+    
+    @Override
+    public AggregateCacheStats stats() {
+        CacheStats stats = cache.stats();
+        return new AggregateCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+    }
+    
+    public static class Builder<DOMAIN extends Aggregate> {
+        
+        private long maximumSize = 10_000;
+        private long maximumWeight;
+        private ToIntFunction<DOMAIN> weigher;
+        private Function<DOMAIN, Duration> ttl = domain -> Duration.ofMinutes(10);
+        
+        /**
+         * Bounds the cache by entry count, ignored once a weigher is set.
+         */
+        public Builder<DOMAIN> maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+        
+        /**
+         * Bounds the cache by the total weight of its entries.
+         */
+        public Builder<DOMAIN> maximumWeight(long maximumWeight, ToIntFunction<DOMAIN> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+        
+        public Builder<DOMAIN> ttl(Duration ttl) {
+            return ttl(domain -> ttl);
+        }
+        
+        /**
+         * Chooses the time to live of each aggregate when it is cached.
+         */
+        public Builder<DOMAIN> ttl(Function<DOMAIN, Duration> ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+        
+        public LocalAggregateCache<DOMAIN> build() {
+            return new LocalAggregateCache<>(this);
+        }
+    }
+}
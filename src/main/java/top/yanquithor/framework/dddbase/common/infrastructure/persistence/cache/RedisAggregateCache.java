@@ -0,0 +1,315 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+import com.alibaba.fastjson2.JSONB;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Two-level aggregate cache: a per-JVM near cache in front of a Redis cache shared by all nodes.
+ * <p>
+ * Aggregates are stored in Redis in fastjson2 JSONB form. Every invalidation deletes the Redis entry
+ * and is broadcast over a pub/sub channel so the near caches of the other nodes drop their copy too.
+ * Inside a transaction the invalidation is repeated once the transaction completes, so readers that
+ * reloaded its uncommitted state in between do not leave stale entries behind, whether it commits or
+ * rolls back. A value loaded from the database reaches Redis only if no invalidation of its id, local or
+ * broadcast, arrived while it was loading.
+ * <p>
+ * Hot keys are protected against stampedes on two levels: the near cache lets only one thread per JVM
+ * load a given id, and a short Redis lock lets only one node go to the database while the others wait
+ * for the value to appear.
+ *
+ * @param <DOMAIN> Aggregate type
+ */
+@Slf4j
+public class RedisAggregateCache<DOMAIN extends Aggregate> implements AggregateCache<DOMAIN>, AutoCloseable {
+    
+    private static final String INVALIDATE_ALL = "*";
+    private static final long LOCK_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    
+    private final Class<DOMAIN> type;
+    private final LocalAggregateCache<DOMAIN> nearCache;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MessageListener invalidationListener = this::onInvalidation;
+    private final String keyPrefix;
+    private final ChannelTopic channel;
+    private final Duration ttl;
+    private final Duration lockTtl;
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    
+    /**
+     * @param name              Cache name, used in Redis keys and the invalidation channel
+     * @param type              Aggregate class, needed to decode JSONB
+     * @param nearCache         Per-JVM cache in front of Redis
+     * @param connectionFactory Redis connection factory
+     * @param listenerContainer Container that delivers invalidation messages
+     * @param ttl               Time to live of Redis entries, bounds staleness if an invalidation is lost
+     * @param lockTtl           How long one node may hold the load lock of a key
+     */
+    public RedisAggregateCache(String name, Class<DOMAIN> type, LocalAggregateCache<DOMAIN> nearCache,
+                               RedisConnectionFactory connectionFactory,
+                               RedisMessageListenerContainer listenerContainer,
+                               Duration ttl, Duration lockTtl) {
+        this.type = type;
+        this.nearCache = nearCache;
+        this.listenerContainer = listenerContainer;
+        this.keyPrefix = "ddd:aggregate:" + name + ":";
+        this.channel = new ChannelTopic("ddd:aggregate:" + name + ":invalidate");
+        this.ttl = ttl;
+        this.lockTtl = lockTtl;
+        
+        this.redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+        
+        listenerContainer.addMessageListener(invalidationListener, channel);
+    }
+    
+    @Override
+    public DOMAIN get(long id, LongFunction<DOMAIN> loader) {
+        return nearCache.get(id, key -> loadShared(key, loader));
+    }
+    
+    private DOMAIN loadShared(long id, LongFunction<DOMAIN> loader) {
+        String key = keyPrefix + id;
+        long stamp = nearCache.stamp(); // Before anything is read, so no invalidation can slip in unnoticed
+        DOMAIN cached = read(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        String lockKey = key + ":lock";
+        byte[] lockOwner = nodeId.getBytes(StandardCharsets.UTF_8);
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, lockOwner, lockTtl))) {
+            try {
+                DOMAIN loaded = loader.apply(id);
+                writeIfNotInvalidatedSince(id, loaded, stamp);
+                return loaded;
+            } finally {
+                redisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), lockOwner);
+            }
+        }
+        
+        // Another node is loading this key, wait for its result instead of hitting the database too
+        lockWaits.increment();
+        long deadline = System.nanoTime() + lockTtl.toNanos();
+        while (System.nanoTime() < deadline && Boolean.TRUE.equals(redisTemplate.hasKey(lockKey))) {
+            LockSupport.parkNanos(LOCK_POLL_NANOS);
+        }
+        cached = read(key);
+        if (cached != null) {
+            return cached;
+        }
+        DOMAIN loaded = loader.apply(id);
+        writeIfNotInvalidatedSince(id, loaded, stamp);
+        return loaded;
+    }
+    
+    private DOMAIN read(String key) {
+        byte[] bytes = redisTemplate.opsForValue().get(key);
+        if (bytes == null) {
+            redisMisses.increment();
+            return null;
+        }
+        redisHits.increment();
+        return JSONB.parseObject(bytes, type);
+    }
+    
+    private void write(String key, DOMAIN domain) {
+        if (domain != null) {
+            redisTemplate.opsForValue().set(key, JSONB.toBytes(domain), ttl);
+        }
+    }
+    
+    /**
+     * Writes a freshly loaded aggregate to Redis unless its id was invalidated since the stamp was taken.
+     * An invalidation landing between the check and the write is caught by checking again afterwards.
+     */
+    private void writeIfNotInvalidatedSince(long id, DOMAIN domain, long stamp) {
+        if (domain == null || nearCache.invalidatedSince(id, stamp)) {
+            return;
+        }
+        String key = keyPrefix + id;
+        write(key, domain);
+        if (nearCache.invalidatedSince(id, stamp)) {
+            redisTemplate.delete(key);
+        }
+    }
+    
+    @Override
+    public Map<Long, DOMAIN> getAllPresent(Collection<Long> ids) {
+        Map<Long, DOMAIN> present = new HashMap<>(nearCache.getAllPresent(ids));
+        List<Long> missing = new ArrayList<>(ids.size() - present.size());
+        List<String> keys = new ArrayList<>(ids.size() - present.size());
+        for (Long id : ids) {
+            if (!present.containsKey(id)) {
+                missing.add(id);
+                keys.add(keyPrefix + id);
+            }
+        }
+        if (keys.isEmpty()) {
+            return present;
+        }
+        List<byte[]> values = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; values != null && i < values.size(); i++) {
+            byte[] bytes = values.get(i);
+            if (bytes == null) {
+                redisMisses.increment();
+                continue;
+            }
+            redisHits.increment();
+            DOMAIN domain = JSONB.parseObject(bytes, type);
+            present.put(missing.get(i), domain);
+            nearCache.put(missing.get(i), domain);
+        }
+        return present;
+    }
+    
+    @Override
+    public void put(long id, DOMAIN domain) {
+        nearCache.put(id, domain);
+        if (domain == null) {
+            redisTemplate.delete(keyPrefix + id);
+        } else {
+            write(keyPrefix + id, domain);
+        }
+    }
+    
+    @Override
+    public long stamp() {
+        return nearCache.stamp();
+    }
+    
+    /**
+     * Writes to Redis only if the near cache accepted the aggregate, i.e. no invalidation for its id,
+     * local or broadcast by another node, arrived since the stamp was taken.
+     */
+    @Override
+    public boolean putIfNotInvalidatedSince(long id, DOMAIN domain, long stamp) {
+        if (!nearCache.putIfNotInvalidatedSince(id, domain, stamp)) {
+            return false;
+        }
+        writeIfNotInvalidatedSince(id, domain, stamp);
+        return true;
+    }
+    
+    @Override
+    public void invalidate(long id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // Also on rollback, which would otherwise leave a reloaded rolled-back state on every node
+                    evict(id);
+                }
+            });
+        }
+    }
+    
+    private void evict(long id) {
+        nearCache.discard(id);
+        redisTemplate.delete(keyPrefix + id);
+        publish(String.valueOf(id));
+    }
+    
+    @Override
+    public void invalidateAll() {
+        nearCache.invalidateAll();
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(keyPrefix + "*").count(1000).build())) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        }
+        if (!keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+        publish(INVALIDATE_ALL);
+    }
+    
+    private void publish(String target) {
+        redisTemplate.convertAndSend(channel.getTopic(), (nodeId + "|" + target).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private void onInvalidation(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.startsWith(nodeId + "|")) {
+            return; // Own invalidations are already applied locally
+        }
+        String target = body.substring(separator + 1);
+        try {
+            if (INVALIDATE_ALL.equals(target)) {
+                nearCache.invalidateAll();
+            } else {
+                nearCache.discard(Long.parseLong(target));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed cache invalidation message: {}", body);
+        }
+    }
+    
+    /**
+     * @return Statistics of the near cache, which serves most lookups
+     */
+    @Override
+    public AggregateCacheStats stats() {
+        return nearCache.stats();
+    }
+    
+    public long getRedisHits() {
+        return redisHits.sum();
+    }
+    
+    public long getRedisMisses() {
+        return redisMisses.sum();
+    }
+    
+    /**
+     * @return Times a node waited for another node to load a hot key
+     */
+    public long getLockWaits() {
+        return lockWaits.sum();
+    }
+    
+    @Override
+    public void close() {
+        listenerContainer.removeMessageListener(invalidationListener, channel);
+    }
+}
@@ -0,0 +1,99 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.dialect;
+
+import com.baomidou.mybatisplus.core.toolkit.MybatisUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.OptionalLong;
+
+/**
+ * Databases supported by the framework, with the limits that shape generated SQL.
+ */
+@Slf4j
+public enum SqlDialect {
+    
+    // Bind parameters are addressed with a signed 16-bit index by the JDBC driver
+    POSTGRESQL(32767, "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)"),
+    // TABLE_ROWS is exact for MyISAM and sampled for InnoDB
+    MARIADB(65535, "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?"),
+    // SQLITE_MAX_VARIABLE_NUMBER of SQLite builds older than 3.32
+    SQLITE(999, null),
+    // No hard limit, kept moderate so the parser and planner stay fast
+    H2(10000, null),
+    OTHER(1000, null);
+    
+    private final int maxBindParameters;
+    private final String rowEstimateSql; // Takes the table name, null if the database keeps no usable statistics
+    
+    SqlDialect(int maxBindParameters, String rowEstimateSql) {
+        this.maxBindParameters = maxBindParameters;
+        this.rowEstimateSql = rowEstimateSql;
+    }
+    
+    /**
+     * @return Largest number of values one {@code IN (...)} list may carry in a single statement
+     */
+    public int maxInListSize() {
+        return maxBindParameters;
+    }
+    
+    /**
+     * Reads the table's approximate row count from planner statistics or the catalog, without scanning it.
+     *
+     * @param connection Connection to the database
+     * @param tableName  Table name
+     * @return Estimated row count, empty if the dialect has no estimate or the statistics are missing. A
+     *         non-positive figure counts as missing: PostgreSQL reports 0 or -1 for tables never analyzed.
+     * @throws SQLException If the catalog query fails
+     */
+    public OptionalLong estimateRowCount(Connection connection, String tableName) throws SQLException {
+        if (rowEstimateSql == null) {
+            return OptionalLong.empty();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(rowEstimateSql)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    long estimate = resultSet.getLong(1);
+                    if (!resultSet.wasNull() && estimate > 0) {
+                        return OptionalLong.of(estimate);
+                    }
+                }
+                return OptionalLong.empty();
+            }
+        }
+    }
+    
+    /**
+     * Detects the dialect of the database a MyBatis mapper is bound to.
+     *
+     * @param mapper Mapper proxy
+     * @return Detected dialect, {@link #OTHER} if unknown or undetectable
+     */
+    public static SqlDialect of(Object mapper) {
+        try {
+            DataSource dataSource = MybatisUtils.getSqlSessionFactory(MybatisUtils.getMybatisMapperProxy(mapper))
+                    .getConfiguration().getEnvironment().getDataSource();
+            try (Connection connection = dataSource.getConnection()) {
+                return fromProductName(connection.getMetaData().getDatabaseProductName());
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Cannot detect database dialect, falling back to {}", OTHER, e);
+            return OTHER;
+        }
+    }
+    
+    public static SqlDialect fromProductName(String productName) {
+        String name = productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+        if (name.contains("postgres")) return POSTGRESQL;
+        if (name.contains("mariadb") || name.contains("mysql")) return MARIADB;
+        if (name.contains("sqlite")) return SQLITE;
+        if (name.equals("h2")) return H2;
+        return OTHER;
+    }
+}
@@ -0,0 +1,40 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.injector;
+
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import org.apache.ibatis.session.Configuration;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.mapper.BaseMapperX;
+
+import java.util.List;
+
+/**
+ * SQL injector that adds the {@link BaseMapperX} extensions on top of the MyBatis-Plus defaults.
+ * Register it as the {@code ISqlInjector} bean to enable them.
+ */
+public class BaseMapperXSqlInjector extends DefaultSqlInjector {
+    
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    
+    private final int fetchSize;
+    
+    public BaseMapperXSqlInjector() {
+        this(DEFAULT_FETCH_SIZE);
+    }
+    
+    /**
+     * @param fetchSize Rows the JDBC driver fetches per round trip for cursor queries
+     */
+    public BaseMapperXSqlInjector(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+    
+    @Override
+    public List<AbstractMethod> getMethodList(Configuration configuration, Class<?> mapperClass, TableInfo tableInfo) {
+        List<AbstractMethod> methods = super.getMethodList(configuration, mapperClass, tableInfo);
+        if (BaseMapperX.class.isAssignableFrom(mapperClass)) {
+            methods.add(new SelectCursor(fetchSize));
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,38 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.injector;
+
+import com.baomidou.mybatisplus.core.injector.methods.SelectList;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.mapping.StatementType;
+
+import java.io.Serial;
+
+/**
+ * Injects {@code BaseMapperX#selectCursor}: the same SQL as {@code selectList}, registered as a
+ * forward-only statement with a driver fetch size so rows are streamed instead of buffered.
+ */
+public class SelectCursor extends SelectList {
+    
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    private final int fetchSize;
+    
+    public SelectCursor(int fetchSize) {
+        super("selectCursor");
+        this.fetchSize = fetchSize;
+    }
+    
+    @Override
+    protected MappedStatement addSelectMappedStatementForTable(Class<?> mapperClass, String id, SqlSource sqlSource, TableInfo table) {
+        String resultMap = table.getResultMap();
+        return builderAssistant.addMappedStatement(id, sqlSource, StatementType.PREPARED, SqlCommandType.SELECT,
+                fetchSize, null, null, null, resultMap, resultMap == null ? table.getEntityType() : null,
+                ResultSetType.FORWARD_ONLY, false, false, false, NoKeyGenerator.INSTANCE, null, null,
+                configuration.getDatabaseId(), languageDriver);
+    }
+}
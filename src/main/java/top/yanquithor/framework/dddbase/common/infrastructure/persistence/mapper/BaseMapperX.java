@@ -1,7 +1,21 @@
 package top.yanquithor.framework.dddbase.common.infrastructure.persistence.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dataobject.BaseDO;
 
 public interface BaseMapperX<E extends BaseDO> extends BaseMapper<E> {
+    
+    /**
+     * Streams the rows matching the wrapper through a server-side cursor with the driver fetch size
+     * configured on {@code BaseMapperXSqlInjector}, which must be registered for this method to exist.
+     * The cursor is only readable while its session is open, i.e. inside a transaction under Spring.
+     *
+     * @param queryWrapper Query conditions
+     * @return Open cursor, to be closed by the caller
+     */
+    Cursor<E> selectCursor(@Param(Constants.WRAPPER) Wrapper<E> queryWrapper);
 }
@@ -0,0 +1,61 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown after a chunked batch write finished with one or more failed chunks.
+ * Chunks that are not listed in {@link #getFailures()} were written.
+ */
+public class BatchWriteException extends RuntimeException {
+    
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    private final ArrayList<ChunkFailure> failures;
+    private final int writtenCount;
+    
+    protected BatchWriteException(String operation, List<ChunkFailure> failures, int writtenCount) {
+        super(String.format("%s failed for %d chunk(s), %d row(s) written", operation, failures.size(), writtenCount),
+                failures.isEmpty() ? null : failures.get(0).cause());
+        this.failures = new ArrayList<>(failures);
+        this.writtenCount = writtenCount;
+    }
+    
+    /**
+     * @param operation    Name of the batch operation, used in the message
+     * @param failures     Failed chunks, the first failure's cause becomes the cause and the others are suppressed
+     * @param writtenCount Rows written by the successful chunks
+     */
+    public static BatchWriteException of(String operation, List<ChunkFailure> failures, int writtenCount) {
+        BatchWriteException exception = new BatchWriteException(operation, failures, writtenCount);
+        for (int i = 1; i < failures.size(); i++) {
+            if (failures.get(i).cause() != null) {
+                exception.addSuppressed(failures.get(i).cause());
+            }
+        }
+        return exception;
+    }
+    
+    public List<ChunkFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+    
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+    
+    /**
+     * A chunk that could not be written.
+     *
+     * @param chunkIndex Zero-based chunk number
+     * @param fromIndex  Index of the chunk's first element in the submitted collection
+     * @param size       Number of elements in the chunk
+     * @param cause      Failure raised by the driver, or null if rows were silently not affected
+     */
+    public record ChunkFailure(int chunkIndex, int fromIndex, int size, Throwable cause) implements Serializable {
+    }
+}
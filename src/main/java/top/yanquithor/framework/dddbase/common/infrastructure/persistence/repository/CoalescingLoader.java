@@ -0,0 +1,161 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing.RoutingContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-id loads into one batched query, in the manner of DataLoader.
+ * The first request of a window becomes its leader: it waits up to {@code window} for other requests to join,
+ * or less once {@code maxBatchSize} distinct ids are collected, then loads all ids with a single call on its own
+ * thread and completes every waiter from the shared result. Requests for the same id share one slot.
+ * <p>
+ * Callers inside a transaction load on their own, since the leader's query would not run on their
+ * connection and could not see their uncommitted writes. The leader queries with the routing state of all
+ * callers in the window, so the query stays on the primary if any of them wrote recently.
+ *
+ * @param <V> Loaded value type
+ */
+public class CoalescingLoader<V> {
+    
+    private final Function<List<Long>, Map<Long, V>> batchLoader;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private Batch<V> current; // Window still accepting requests
+    
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder loadedIds = new LongAdder();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+    
+    /**
+     * @param batchLoader  Loads many ids at once, ids without a value may be left out of the result
+     * @param window       How long the first request of a window waits for others
+     * @param maxBatchSize Distinct ids that close a window early
+     */
+    public CoalescingLoader(Function<List<Long>, Map<Long, V>> batchLoader, Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("max batch size must be greater than 0");
+        }
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.batchLoader = batchLoader;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+    }
+    
+    /**
+     * Loads one id, sharing the query with concurrent callers. Inside a transaction the id is loaded
+     * right away on the caller's thread and left out of the statistics.
+     *
+     * @return Loaded value, null if the batch loader returned none for the id
+     */
+    public V load(long id) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return batchLoader.apply(List.of(id)).get(id);
+        }
+        requests.increment();
+        Batch<V> batch;
+        CompletableFuture<V> result;
+        boolean leader = false;
+        lock.lock();
+        try {
+            batch = current;
+            if (batch == null) {
+                batch = new Batch<>(Thread.currentThread());
+                current = batch;
+                leader = true;
+            }
+            result = batch.slots.computeIfAbsent(id, k -> new CompletableFuture<>());
+            batch.contexts.add(RoutingContext.capture());
+            if (batch.slots.size() >= maxBatchSize) {
+                close(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        if (leader) {
+            awaitWindow(batch);
+            dispatch(batch);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+    
+    private void awaitWindow(Batch<V> batch) {
+        long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while (!batch.closed && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        lock.lock();
+        try {
+            close(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void close(Batch<V> batch) {
+        if (!batch.closed) {
+            batch.closed = true;
+            if (current == batch) {
+                current = null;
+            }
+            LockSupport.unpark(batch.leader);
+        }
+    }
+    
+    private void dispatch(Batch<V> batch) {
+        // Closed under the lock, so no request joins the batch from here on
+        List<Long> ids = new ArrayList<>(batch.slots.keySet());
+        batches.increment();
+        loadedIds.add(ids.size());
+        largestBatch.accumulateAndGet(ids.size(), Math::max);
+        try {
+            Map<Long, V> values = RoutingContext.Snapshot.latest(batch.contexts).call(() -> batchLoader.apply(ids));
+            batch.slots.forEach((id, slot) -> slot.complete(values.get(id)));
+        } catch (Throwable e) {
+            // Waiters would otherwise block forever, so errors are handed to them as well
+            batch.slots.values().forEach(slot -> slot.completeExceptionally(e));
+        }
+    }
+    
+    public CoalescingStats stats() {
+        return new CoalescingStats(batches.sum(), requests.sum(), loadedIds.sum(), largestBatch.get());
+    }
+    
+    private static final class Batch<V> {
+        
+        private final Thread leader;
+        private final Map<Long, CompletableFuture<V>> slots = new HashMap<>();
+        private final List<RoutingContext.Snapshot> contexts = new ArrayList<>(); // One per request
+        private volatile boolean closed;
+        
+        private Batch(Thread leader) {
+            this.leader = leader;
+        }
+    }
+}
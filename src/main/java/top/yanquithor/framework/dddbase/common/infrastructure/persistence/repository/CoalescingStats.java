@@ -0,0 +1,26 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+/**
+ * Batch statistics of a {@link CoalescingLoader}.
+ *
+ * @param batches      Windows dispatched as one query
+ * @param requests     Single-id requests received
+ * @param loadedIds    Distinct ids queried, lower than requests when concurrent callers asked for the same id
+ * @param maxBatchSize Largest number of distinct ids in one window
+ */
+public record CoalescingStats(long batches, long requests, long loadedIds, int maxBatchSize) {
+    
+    /**
+     * @return Mean number of distinct ids per window
+     */
+    public double averageBatchSize() {
+        return batches == 0 ? 0 : (double) loadedIds / batches;
+    }
+    
+    /**
+     * @return Fraction of requests answered by a query issued for another caller
+     */
+    public double dedupeRate() {
+        return requests == 0 ? 0 : 1 - (double) loadedIds / requests;
+    }
+}
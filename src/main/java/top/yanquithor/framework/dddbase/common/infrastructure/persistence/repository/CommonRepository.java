@@ -1,31 +1,208 @@
 package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
 
-import com.alibaba.fastjson2.JSON;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.baomidou.mybatisplus.core.override.MybatisMapperProxy;
+import com.baomidou.mybatisplus.core.toolkit.MybatisBatchUtils;
+import com.baomidou.mybatisplus.core.toolkit.MybatisUtils;
 import lombok.extern.slf4j.Slf4j;
 import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+import top.yanquithor.framework.dddbase.common.domain.model.DirtyTracking;
 import top.yanquithor.framework.dddbase.common.domain.repository.BaseRepository;
+import top.yanquithor.framework.dddbase.common.domain.repository.CountMode;
+import top.yanquithor.framework.dddbase.common.domain.repository.CountResult;
 import top.yanquithor.framework.dddbase.common.infrastructure.converter.BaseConverter;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache.AggregateCache;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dataobject.BaseDO;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dialect.SqlDialect;
 import top.yanquithor.framework.dddbase.common.infrastructure.persistence.mapper.BaseMapperX;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing.RoutingContext;
+import top.yanquithor.framework.dddbase.common.infrastructure.trace.PersistenceTracer;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.CsvUtils;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.CsvWriteStats;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 public class CommonRepository<DO extends BaseDO, DOMAIN extends Aggregate, M extends BaseMapperX<DO>> implements BaseRepository<DOMAIN> {
     
+    private static final PersistenceTracer TRACER = PersistenceTracer.of(CommonRepository.class);
+    
     protected final BaseConverter<DO, DOMAIN> converter;
     protected final M mapper;
+    // Rows per JDBC batch for saveAll / updateAll
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile SqlDialect dialect;
+    private volatile TableInfo tableInfo;
+    // Optional read-through cache of converted aggregates, null when caching is off
+    protected volatile AggregateCache<DOMAIN> cache;
+    // Optional batching of concurrent getById misses, null when every miss runs its own query
+    private volatile CoalescingLoader<DOMAIN> coalescer;
+    // Exact counts per probe, served by CountMode.CACHED
+    private final Map<List<Object>, CachedCount> countCache = new ConcurrentHashMap<>();
+    private volatile Duration countTtl = DEFAULT_COUNT_TTL;
+    private volatile Duration countMaxStaleness = DEFAULT_COUNT_MAX_STALENESS;
+    
+    protected static final int DEFAULT_BATCH_SIZE = 1000;
+    protected static final Duration DEFAULT_COUNT_TTL = Duration.ofSeconds(30);
+    protected static final Duration DEFAULT_COUNT_MAX_STALENESS = Duration.ofMinutes(5);
+    private static final int MAX_CACHED_COUNTS = 1024;
+    protected static final String STATUS_PROPERTY = "status";
+    protected static final String DELETED_STATUS = "deleted";
     
     protected CommonRepository(BaseConverter<DO, DOMAIN> converter, M mapper) {
         this.converter = converter;
         this.mapper = mapper;
     }
     
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Turns on read-through caching for {@link #getById(long)} and {@link #getByIds(Collection)}.
+     * Writes through this repository invalidate the affected entries.
+     *
+     * @param cache Aggregate cache, or null to turn caching off
+     */
+    public void setCache(AggregateCache<DOMAIN> cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * @return Id of the aggregate, taken from its data object
+     */
+    public long idOf(DOMAIN domain) {
+        return converter.toDO(domain).getId();
+    }
+    
+    protected void evict(long id) {
+        AggregateCache<DOMAIN> current = cache;
+        if (current != null) {
+            current.invalidate(id);
+        }
+    }
+    
+    protected void evictAll(List<DO> dos) {
+        AggregateCache<DOMAIN> current = cache;
+        if (current != null) {
+            for (DO aDo : dos) {
+                current.invalidate(aDo.getId());
+            }
+        }
+    }
+    
+    /**
+     * @return Data source the mapper's session factory is bound to
+     */
+    protected DataSource dataSource() {
+        return MybatisUtils.getSqlSessionFactory(MybatisUtils.getMybatisMapperProxy(mapper))
+                .getConfiguration().getEnvironment().getDataSource();
+    }
+    
+    /**
+     * @return Dialect of the database behind the mapper, detected on first use
+     */
+    protected SqlDialect dialect() {
+        SqlDialect current = dialect;
+        if (current == null) {
+            current = SqlDialect.of(mapper);
+            dialect = current;
+        }
+        return current;
+    }
+    
+    /**
+     * @return MyBatis-Plus table metadata of {@code DO}, resolved from the repository's type arguments
+     */
+    protected TableInfo tableInfo() {
+        TableInfo current = tableInfo;
+        if (current == null) {
+            Class<?>[] typeArguments = GenericTypeResolver.resolveTypeArguments(getClass(), CommonRepository.class);
+            Class<?> doClass = typeArguments != null ? typeArguments[0] : GenericTypeResolver.resolveTypeArgument(
+                    MybatisUtils.getMybatisMapperProxy(mapper).getMapperInterface(), BaseMapperX.class);
+            current = doClass == null ? null : TableInfoHelper.getTableInfo(doClass);
+            if (current == null) {
+                throw new IllegalStateException("Cannot resolve table info for " + getClass().getName());
+            }
+            tableInfo = current;
+        }
+        return current;
+    }
+    
+    /**
+     * Builds equality filters from the non-null columns of the probe's data object.
+     * Unlike {@code setEntity}, an unset primitive id (0) is not turned into an {@code id = 0} filter.
+     *
+     * @param probe Probe aggregate, null for no filter
+     * @return Query wrapper with one condition per set column
+     */
+    protected QueryWrapper<DO> probe(DOMAIN probe) {
+        QueryWrapper<DO> wrapper = new QueryWrapper<>();
+        if (probe == null) {
+            return wrapper;
+        }
+        TableInfo info = tableInfo();
+        DO aDo = converter.toDO(probe);
+        if (aDo.getId() != 0) {
+            wrapper.eq(info.getKeyColumn(), aDo.getId());
+        }
+        for (TableFieldInfo field : info.getFieldList()) {
+            Object value = info.getPropertyValue(aDo, field.getProperty());
+            if (value != null) {
+                wrapper.eq(field.getColumn(), value);
+            }
+        }
+        return wrapper;
+    }
+    
     @Override
     public DOMAIN save(DOMAIN domain) {
+        RoutingContext.markWrite();
         DO aDo = converter.toDO(domain);
         int i = mapper.insert(aDo);
         if (i < 1) {
@@ -33,48 +210,651 @@ public class CommonRepository<DO extends BaseDO, DOMAIN extends Aggregate, M ext
             log.error("insert error", insertError);
             throw insertError;
         }
-        log.debug("insert {} to database", JSON.toJSONString(aDo));
+        if (TRACER.enabled()) {
+            TRACER.trace("insert {} to database", aDo);
+        }
+        evict(aDo.getId());
         return converter.toDomain(aDo);
     }
     
+    @Override
+    public List<DOMAIN> saveAll(Collection<DOMAIN> domains) {
+        if (domains == null || domains.isEmpty()) {
+            return new ArrayList<>();
+        }
+        RoutingContext.markWrite();
+        List<DO> dos = converter.toDOs(domains);
+        try {
+            writeInChunks("insert", dos, chunk -> mapper.insert(chunk, chunk.size()));
+        } finally {
+            evictAll(dos);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("insert {} rows to database in chunks of {}", dos.size(), batchSize);
+        }
+        return converter.toDomains(dos);
+    }
+    
     @Override
     public Long count(DOMAIN domain) {
-        if (domain == null) {
-            log.debug("count all");
-            return mapper.selectCount(new LambdaQueryWrapper<DO>());
-        } else {
-            log.debug("count query: {}", JSON.toJSONString(domain));
-            return mapper.selectCount(new LambdaQueryWrapper<DO>()
-                    .setEntity(converter.toDO(domain)));
+        return count(domain, CountMode.EXACT).value();
+    }
+    
+    /**
+     * {@link CountMode#ESTIMATED} only applies to unfiltered counts; with a probe, or on databases without
+     * statistics (H2, SQLite), the count is exact. {@link CountMode#CACHED} serves a remembered count while it
+     * is younger than the TTL, serves it and recounts in the background until it reaches the staleness bound,
+     * and counts synchronously beyond that, see {@link #setCountCache(Duration, Duration)}.
+     */
+    @Override
+    public CountResult count(DOMAIN domain, CountMode mode) {
+        if (TRACER.enabled()) {
+            TRACER.trace("count query: {}", domain);
+        }
+        QueryWrapper<DO> wrapper = probe(domain);
+        return switch (mode) {
+            case EXACT -> exactCount(wrapper);
+            case CACHED -> cachedCount(wrapper);
+            case ESTIMATED -> domain == null ? estimatedCount() : exactCount(wrapper);
+        };
+    }
+    
+    /**
+     * @param ttl          How long a cached count is served without recounting
+     * @param maxStaleness Oldest cached count ever served, at least the TTL
+     */
+    public void setCountCache(Duration ttl, Duration maxStaleness) {
+        if (ttl.isNegative() || maxStaleness.compareTo(ttl) < 0) {
+            throw new IllegalArgumentException("max staleness must not be less than ttl, and ttl must not be negative");
+        }
+        this.countTtl = ttl;
+        this.countMaxStaleness = maxStaleness;
+        countCache.clear();
+    }
+    
+    private CountResult exactCount(QueryWrapper<DO> wrapper) {
+        return RoutingContext.read(() -> new CountResult(mapper.selectCount(wrapper), CountMode.EXACT, Instant.now()));
+    }
+    
+    private CountResult estimatedCount() {
+        return RoutingContext.read(this::readRowEstimate);
+    }
+    
+    private CountResult readRowEstimate() {
+        String tableName = tableInfo().getTableName();
+        try (Connection connection = dataSource().getConnection()) {
+            OptionalLong estimate = dialect().estimateRowCount(connection, tableName);
+            if (estimate.isPresent()) {
+                return new CountResult(estimate.getAsLong(), CountMode.ESTIMATED, Instant.now());
+            }
+            log.debug("no row estimate for {} on {}, counting exactly", tableName, dialect());
+        } catch (SQLException e) {
+            log.warn("Cannot read row estimate for {}, counting exactly", tableName, e);
+        }
+        return exactCount(new QueryWrapper<>());
+    }
+    
+    private CountResult cachedCount(QueryWrapper<DO> wrapper) {
+        List<Object> key = List.of(wrapper.getSqlSegment(), Map.copyOf(wrapper.getParamNameValuePairs()));
+        CachedCount cached = countCache.get(key);
+        if (cached != null) {
+            Duration age = Duration.between(cached.measuredAt(), Instant.now());
+            if (age.compareTo(countMaxStaleness) <= 0) {
+                if (age.compareTo(countTtl) > 0 && cached.refreshing().compareAndSet(false, true)) {
+                    Thread.ofVirtual().name("count-refresh").start(() -> refreshCount(key, wrapper, cached));
+                }
+                return new CountResult(cached.value(), CountMode.CACHED, cached.measuredAt());
+            }
+        }
+        CountResult exact = exactCount(wrapper);
+        rememberCount(key, exact);
+        return exact;
+    }
+    
+    private void refreshCount(List<Object> key, QueryWrapper<DO> wrapper, CachedCount stale) {
+        try {
+            rememberCount(key, exactCount(wrapper));
+        } catch (RuntimeException e) {
+            log.warn("Background count refresh failed", e);
+            stale.refreshing().set(false);
+        }
+    }
+    
+    private void rememberCount(List<Object> key, CountResult count) {
+        if (countCache.size() >= MAX_CACHED_COUNTS) {
+            countCache.clear();
         }
+        countCache.put(key, new CachedCount(count.value(), count.measuredAt(), new AtomicBoolean()));
+    }
+    
+    private record CachedCount(long value, Instant measuredAt, AtomicBoolean refreshing) {
     }
     
+    /**
+     * Aggregates implementing {@link DirtyTracking} are written with
+     * {@code UPDATE ... SET <changed columns> WHERE id = ? [AND version = ?]}, and not written at all when
+     * nothing changed. When the table has a {@code @Version} column, the stored version is incremented and
+     * the new version is written back into the aggregate, so it can be updated again without reloading.
+     * Other aggregates are written in full by id.
+     *
+     * @throws OptimisticLockingFailureException If the row is gone or its version no longer matches
+     */
     @Override
     public DOMAIN update(DOMAIN domain) {
-        if (domain != null) {
-            LambdaUpdateWrapper<DO> wrapper = new LambdaUpdateWrapper<>();
-            wrapper.setEntity(converter.toDO(domain));
-            mapper.update(wrapper);
-        } else {
+        if (domain == null) {
             throw new RuntimeException("domain is null");
         }
+        RoutingContext.markWrite();
+        DO aDo = converter.toDO(domain);
+        try {
+            if (domain instanceof DirtyTracking tracked) {
+                List<TableFieldInfo> changed = changedFields(tracked);
+                if (changed.isEmpty()) {
+                    log.debug("skip update of {}, nothing changed", aDo.getId());
+                    return domain;
+                }
+                checkUpdated(mapper.update(partialUpdate(aDo, changed)), aDo, true);
+                advanceVersion(aDo, domain);
+                clearDirtyFields(List.of(tracked));
+            } else {
+                checkUpdated(mapper.updateById(aDo), aDo, tableInfo().isWithVersion());
+            }
+            if (TRACER.enabled()) {
+                TRACER.trace("update {} in database", aDo);
+            }
+        } finally {
+            evict(aDo.getId());
+        }
         return domain;
     }
     
+    /**
+     * Dirty-tracked aggregates are grouped by their set of changed columns, so that each group shares one
+     * statement and is sent as a single JDBC batch; aggregates without changes are skipped.
+     * Chunk indexes of a {@link BatchWriteException} refer to that grouped order.
+     */
+    @Override
+    public List<DOMAIN> updateAll(Collection<DOMAIN> domains) {
+        if (domains == null || domains.isEmpty()) {
+            return new ArrayList<>();
+        }
+        RoutingContext.markWrite();
+        List<DO> dos = converter.toDOs(domains);
+        List<DO> full = new ArrayList<>();
+        Map<List<TableFieldInfo>, List<DO>> groups = new LinkedHashMap<>();
+        Map<DO, List<TableFieldInfo>> changedColumns = new IdentityHashMap<>();
+        Map<DO, DOMAIN> owners = new IdentityHashMap<>();
+        List<DirtyTracking> tracked = new ArrayList<>();
+        int index = 0;
+        for (DOMAIN domain : domains) {
+            DO aDo = dos.get(index++);
+            if (domain instanceof DirtyTracking dirty) {
+                List<TableFieldInfo> changed = changedFields(dirty);
+                if (!changed.isEmpty()) {
+                    groups.computeIfAbsent(changed, k -> new ArrayList<>()).add(aDo);
+                    changedColumns.put(aDo, changed);
+                    owners.put(aDo, domain);
+                    tracked.add(dirty);
+                }
+            } else {
+                full.add(aDo);
+            }
+        }
+        try {
+            if (!changedColumns.isEmpty()) {
+                List<DO> partial = new ArrayList<>(changedColumns.size());
+                groups.values().forEach(partial::addAll);
+                MybatisMapperProxy<?> proxy = MybatisUtils.getMybatisMapperProxy(mapper);
+                MybatisBatch.Method<DO> method = new MybatisBatch.Method<>(proxy.getMapperInterface());
+                try {
+                    writeInChunks("update", partial, chunk -> MybatisBatchUtils.execute(
+                            MybatisUtils.getSqlSessionFactory(proxy), chunk,
+                            method.<DO>update(aDo -> partialUpdate(aDo, changedColumns.get(aDo)))));
+                } catch (BatchWriteException e) {
+                    // Rows of the chunks that went through carry the incremented version in the database
+                    boolean[] failed = new boolean[partial.size()];
+                    for (BatchWriteException.ChunkFailure failure : e.getFailures()) {
+                        Arrays.fill(failed, failure.fromIndex(), failure.fromIndex() + failure.size(), true);
+                    }
+                    for (int i = 0; i < failed.length; i++) {
+                        if (!failed[i]) {
+                            advanceVersion(partial.get(i), owners.get(partial.get(i)));
+                        }
+                    }
+                    throw e;
+                }
+                for (DO aDo : partial) {
+                    advanceVersion(aDo, owners.get(aDo));
+                }
+                clearDirtyFields(tracked);
+            }
+            if (!full.isEmpty()) {
+                writeInChunks("update", full, chunk -> mapper.updateById(chunk, chunk.size()));
+            }
+        } finally {
+            evictAll(dos);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("update {} rows in database in chunks of {}, {} unchanged skipped",
+                    changedColumns.size() + full.size(), batchSize, dos.size() - changedColumns.size() - full.size());
+        }
+        return new ArrayList<>(domains);
+    }
+    
+    /**
+     * @return Columns of the aggregate's dirty properties in table order, without the key and version columns
+     */
+    protected List<TableFieldInfo> changedFields(DirtyTracking tracked) {
+        Set<String> dirty = tracked.dirtyFields();
+        if (dirty == null || dirty.isEmpty()) {
+            return List.of();
+        }
+        List<TableFieldInfo> changed = new ArrayList<>(dirty.size());
+        for (TableFieldInfo field : tableInfo().getFieldList()) {
+            if (!field.isVersion() && dirty.contains(field.getProperty())) {
+                changed.add(field);
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Builds {@code SET <columns> WHERE id = ?}, plus a version check and increment on versioned tables.
+     */
+    protected UpdateWrapper<DO> partialUpdate(DO aDo, List<TableFieldInfo> columns) {
+        TableInfo info = tableInfo();
+        UpdateWrapper<DO> wrapper = new UpdateWrapper<>();
+        for (TableFieldInfo field : columns) {
+            wrapper.set(field.getColumn(), info.getPropertyValue(aDo, field.getProperty()));
+        }
+        wrapper.eq(info.getKeyColumn(), aDo.getId());
+        TableFieldInfo version = info.getVersionFieldInfo();
+        if (version != null) {
+            Object current = info.getPropertyValue(aDo, version.getProperty());
+            if (current != null) {
+                wrapper.setSql(version.getColumn() + " = " + version.getColumn() + " + 1");
+                wrapper.eq(version.getColumn(), current);
+            }
+        }
+        return wrapper;
+    }
+    
+    /**
+     * Clears the dirty fields of written aggregates. Inside a transaction this waits for the commit, so that
+     * after a rollback the aggregates still carry their changes and can be written again.
+     */
+    protected void clearDirtyFields(List<? extends DirtyTracking> written) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            written.forEach(DirtyTracking::clearDirtyFields);
+            return;
+        }
+        List<DirtyTracking> copy = List.copyOf(written);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                copy.forEach(DirtyTracking::clearDirtyFields);
+            }
+        });
+    }
+    
+    /**
+     * Mirrors the {@code version = version + 1} of {@link #partialUpdate} into the data object and the aggregate,
+     * the way MyBatis-Plus' optimistic locker does for entities. Aggregates without a settable property
+     * named like the version field are left alone. Inside a transaction the aggregate's version is put back
+     * if the transaction does not commit.
+     */
+    protected void advanceVersion(DO aDo, DOMAIN domain) {
+        TableInfo info = tableInfo();
+        TableFieldInfo version = info.getVersionFieldInfo();
+        if (version == null) {
+            return;
+        }
+        Object current = info.getPropertyValue(aDo, version.getProperty());
+        if (!(current instanceof Number number)) {
+            return;
+        }
+        long next = number.longValue() + 1;
+        info.setPropertyValue(aDo, version.getProperty(), narrow(next, version.getPropertyType()));
+        MetaObject meta = SystemMetaObject.forObject(domain);
+        String property = version.getProperty();
+        if (!meta.hasSetter(property)) {
+            return;
+        }
+        Class<?> type = meta.getSetterType(property);
+        meta.setValue(property, narrow(next, type));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        meta.setValue(property, narrow(number.longValue(), type));
+                    }
+                }
+            });
+        }
+    }
+    
+    private static Object narrow(long value, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return (int) value;
+        }
+        if (type == short.class || type == Short.class) {
+            return (short) value;
+        }
+        return value;
+    }
+    
+    private static void checkUpdated(int rows, BaseDO aDo, boolean strict) {
+        if (rows < 1) {
+            if (strict) {
+                throw new OptimisticLockingFailureException(String.format(
+                        "Row %d was deleted or modified concurrently", aDo.getId()));
+            }
+            log.debug("update of {} affected no rows", aDo.getId());
+        }
+    }
+    
+    /**
+     * Runs a JDBC batch per chunk of {@link #batchSize} rows, carrying on after a failed chunk
+     * so that every failure can be reported at once.
+     *
+     * @param operation Operation name used in the error message
+     * @param dos       Rows to write
+     * @param writer    Batch statement for one chunk
+     * @throws BatchWriteException If any chunk failed or left rows unaffected
+     */
+    protected void writeInChunks(String operation, List<DO> dos, Function<List<DO>, List<BatchResult>> writer) {
+        List<BatchWriteException.ChunkFailure> failures = new ArrayList<>();
+        int written = 0;
+        for (int from = 0, chunkIndex = 0; from < dos.size(); from += batchSize, chunkIndex++) {
+            List<DO> chunk = dos.subList(from, Math.min(from + batchSize, dos.size()));
+            try {
+                if (allRowsAffected(writer.apply(chunk))) {
+                    written += chunk.size();
+                } else {
+                    failures.add(new BatchWriteException.ChunkFailure(chunkIndex, from, chunk.size(), null));
+                }
+            } catch (RuntimeException e) {
+                log.error("{} chunk {} ({} rows from index {}) failed", operation, chunkIndex, chunk.size(), from, e);
+                failures.add(new BatchWriteException.ChunkFailure(chunkIndex, from, chunk.size(), e));
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw BatchWriteException.of(operation, failures, written);
+        }
+    }
+    
+    private static boolean allRowsAffected(List<BatchResult> results) {
+        for (BatchResult result : results) {
+            for (int count : result.getUpdateCounts()) {
+                if (count < 1 && count != Statement.SUCCESS_NO_INFO) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Marks the aggregate's row as deleted by setting its status.
+     */
     @Override
     public DOMAIN delete(DOMAIN domain) {
-        if (domain != null) {
-            LambdaUpdateWrapper<DO> wrapper = new LambdaUpdateWrapper<>();
-            wrapper.set(DO::getStatus, "deleted");
-            mapper.update(wrapper);
-        } else {
+        if (domain == null) {
             throw new RuntimeException("domain is null");
         }
+        RoutingContext.markWrite();
+        long id = idOf(domain);
+        try {
+            mapper.update(softDelete().eq(tableInfo().getKeyColumn(), id));
+        } finally {
+            evict(id);
+        }
+        if (TRACER.enabled()) {
+            TRACER.trace("soft delete {}", id);
+        }
         return domain;
     }
     
+    /**
+     * Marks rows as deleted with one {@code UPDATE ... WHERE id IN (...)} per chunk,
+     * sized to the dialect's bind parameter limit.
+     */
+    @Override
+    public long deleteByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+        List<Long> pending = new ArrayList<>(distinct);
+        String keyColumn = tableInfo().getKeyColumn();
+        // One parameter is taken by the status value
+        int chunkSize = dialect().maxInListSize() - 1;
+        long deleted = 0;
+        RoutingContext.markWrite();
+        try {
+            for (int from = 0; from < pending.size(); from += chunkSize) {
+                deleted += mapper.update(softDelete().in(keyColumn,
+                        pending.subList(from, Math.min(from + chunkSize, pending.size()))));
+            }
+        } finally {
+            AggregateCache<DOMAIN> current = cache;
+            if (current != null) {
+                pending.forEach(current::invalidate);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("soft delete {} of {} rows in chunks of {}", deleted, pending.size(), chunkSize);
+        }
+        return deleted;
+    }
+    
+    private UpdateWrapper<DO> softDelete() {
+        TableInfo info = tableInfo();
+        String statusColumn = info.getFieldList().stream()
+                .filter(field -> STATUS_PROPERTY.equals(field.getProperty()))
+                .map(TableFieldInfo::getColumn)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No status column in " + info.getTableName()));
+        return new UpdateWrapper<DO>().set(statusColumn, DELETED_STATUS);
+    }
+    
     @Override
     public DOMAIN getById(long id) {
-        return converter.toDomain(mapper.selectById(id));
+        AggregateCache<DOMAIN> current = cache;
+        return current == null ? loadById(id) : current.get(id, this::loadById);
+    }
+    
+    protected DOMAIN loadById(long id) {
+        CoalescingLoader<DOMAIN> loader = coalescer;
+        return loader != null ? loader.load(id) : RoutingContext.read(() -> converter.toDomain(mapper.selectById(id)));
+    }
+    
+    /**
+     * Lets concurrent {@link #getById(long)} misses share one {@code IN} query: requests arriving within
+     * {@code window} of each other, up to {@code maxBatchSize} distinct ids, are loaded together.
+     * Each single load may wait up to the window, so this pays off under fan-out traffic only.
+     *
+     * @param window       How long the first request of a batch waits for others
+     * @param maxBatchSize Distinct ids that dispatch a batch early
+     */
+    public void enableCoalescing(Duration window, int maxBatchSize) {
+        this.coalescer = new CoalescingLoader<>(this::loadByIds, window, maxBatchSize);
+    }
+    
+    public void disableCoalescing() {
+        this.coalescer = null;
+    }
+    
+    /**
+     * @return Batch statistics of the coalescing loader, null if coalescing is off
+     */
+    public CoalescingStats coalescingStats() {
+        CoalescingLoader<DOMAIN> loader = coalescer;
+        return loader == null ? null : loader.stats();
+    }
+    
+    private Map<Long, DOMAIN> loadByIds(List<Long> ids) {
+        List<DO> found = selectByIds(ids);
+        List<DOMAIN> domains = converter.toDomains(found);
+        Map<Long, DOMAIN> byId = HashMap.newHashMap(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            byId.put(found.get(i).getId(), domains.get(i));
+        }
+        return byId;
+    }
+    
+    /**
+     * Selects rows with as many {@code IN} queries as the dialect's bind parameter limit requires.
+     */
+    protected List<DO> selectByIds(List<Long> ids) {
+        return RoutingContext.read(() -> selectByIdsInChunks(ids));
+    }
+    
+    private List<DO> selectByIdsInChunks(List<Long> ids) {
+        int chunkSize = dialect().maxInListSize();
+        List<DO> found = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            found.addAll(mapper.selectByIds(ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+        }
+        return found;
+    }
+    
+    @Override
+    public List<DOMAIN> getByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+        AggregateCache<DOMAIN> current = cache;
+        Map<Long, DOMAIN> byId = HashMap.newHashMap(distinct.size());
+        if (current != null) {
+            byId.putAll(current.getAllPresent(distinct));
+            distinct.removeAll(byId.keySet());
+        }
+        
+        // Taken before reading, so rows invalidated while the query runs are not cached stale
+        long stamp = current != null ? current.stamp() : 0;
+        List<DO> found = selectByIds(new ArrayList<>(distinct));
+        List<DOMAIN> domains = converter.toDomains(found);
+        for (int i = 0; i < found.size(); i++) {
+            long id = found.get(i).getId();
+            byId.put(id, domains.get(i));
+            if (current != null) {
+                current.putIfNotInvalidatedSince(id, domains.get(i), stamp);
+            }
+        }
+        List<DOMAIN> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            result.add(id == null ? null : byId.get(id));
+        }
+        return result;
+    }
+    
+    @Override
+    public Stream<DOMAIN> scan(DOMAIN probe, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be greater than 0");
+        }
+        Iterator<DOMAIN> iterator = new KeysetIterator(probe, batchSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+    
+    /**
+     * Exports every aggregate matching the probe to a CSV file through a server-side cursor.
+     * Rows are fetched {@code fetchSize} at a time, converted one by one and written straight to the file,
+     * so memory use is independent of the row count. Requires {@code BaseMapperXSqlInjector} and must run
+     * inside a transaction, which keeps the cursor open and lets PostgreSQL honour the fetch size.
+     *
+     * @param probe      Aggregate whose non-null fields are used as equality filters, null to export everything
+     * @param type       Aggregate class, whose declared fields become the CSV columns
+     * @param outputFile Output file
+     * @return Number of rows written and the throughput achieved
+     * @throws IllegalStateException If no transaction is active
+     */
+    public CsvWriteStats exportCsv(DOMAIN probe, Class<DOMAIN> type, File outputFile) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Outside a transaction the driver buffers the whole result set before the first row is read
+            throw new IllegalStateException("exportCsv must run inside a transaction");
+        }
+        return RoutingContext.read(() -> exportThroughCursor(probe, type, outputFile));
+    }
+    
+    private CsvWriteStats exportThroughCursor(DOMAIN probe, Class<DOMAIN> type, File outputFile) {
+        try (Cursor<DO> cursor = mapper.selectCursor(probe(probe))) {
+            Iterator<DO> rows = cursor.iterator();
+            Iterator<DOMAIN> domains = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
+                
+                @Override
+                public DOMAIN next() {
+                    return converter.toDomain(rows.next());
+                }
+            };
+            return new CsvUtils().writeCsv(domains, type, outputFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close export cursor", e);
+        }
+    }
+    
+    /**
+     * Seeks through the table with {@code id > lastId ORDER BY id LIMIT n}, which stays fast at any depth
+     * because SnowFlake ids are monotonic and the primary key index serves every page.
+     */
+    private class KeysetIterator implements Iterator<DOMAIN> {
+        
+        private final DOMAIN probe;
+        private final int batchSize;
+        private List<DOMAIN> page = List.of();
+        private int position;
+        private Long lastId;
+        private boolean exhausted;
+        
+        private KeysetIterator(DOMAIN probe, int batchSize) {
+            this.probe = probe;
+            this.batchSize = batchSize;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (position < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            fetchPage();
+            return position < page.size();
+        }
+        
+        @Override
+        public DOMAIN next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
+        }
+        
+        private void fetchPage() {
+            String keyColumn = tableInfo().getKeyColumn();
+            QueryWrapper<DO> wrapper = probe(probe);
+            if (lastId != null) {
+                wrapper.gt(keyColumn, lastId);
+            }
+            wrapper.orderByAsc(keyColumn).last("LIMIT " + batchSize);
+            List<DO> rows = RoutingContext.read(() -> mapper.selectList(wrapper));
+            exhausted = rows.size() < batchSize;
+            if (!rows.isEmpty()) {
+                lastId = rows.get(rows.size() - 1).getId();
+            }
+            page = converter.toDomains(rows);
+            position = 0;
+        }
     }
 }
@@ -0,0 +1,150 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionOperations;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the aggregates a use case creates, changes and removes across several repositories,
+ * and writes them together in one transaction on {@link #commit()} instead of one statement per call.
+ * <p>
+ * The flush runs all inserts, then all updates, then all deletes. Within each phase repositories are
+ * visited in table name order and rows in id order, so concurrent units of work lock rows in the same order
+ * and do not deadlock each other; each repository's rows of a phase go out as one JDBC batch.
+ * A unit of work is meant for a single use case on a single thread.
+ */
+@Slf4j
+public class UnitOfWork {
+    
+    private final TransactionOperations transaction;
+    private final Map<CommonRepository<?, ?, ?>, Changes<?>> changes = new IdentityHashMap<>();
+    
+    /**
+     * @param transaction Transaction to flush in, normally a {@code TransactionTemplate}
+     */
+    public UnitOfWork(TransactionOperations transaction) {
+        this.transaction = transaction;
+    }
+    
+    /**
+     * Schedules an insert. The aggregate must already carry its id.
+     *
+     * @throws IllegalArgumentException If the aggregate has no id yet
+     * @throws IllegalStateException    If an aggregate with the same id is already registered
+     */
+    public <DOMAIN extends Aggregate> void registerNew(CommonRepository<?, DOMAIN, ?> repository, DOMAIN domain) {
+        long id = repository.idOf(domain);
+        if (id == 0) {
+            throw new IllegalArgumentException("Aggregate has no id, assign it before registering it as new");
+        }
+        Changes<DOMAIN> pending = changesOf(repository);
+        if (pending.added.containsKey(id) || pending.removed.containsKey(id) || pending.dirty.containsKey(id)) {
+            throw new IllegalStateException(String.format("Aggregate %d is already registered", id));
+        }
+        pending.added.put(id, domain);
+    }
+    
+    /**
+     * Schedules an update. Changes to an aggregate registered as new are folded into its insert.
+     */
+    public <DOMAIN extends Aggregate> void registerDirty(CommonRepository<?, DOMAIN, ?> repository, DOMAIN domain) {
+        Changes<DOMAIN> pending = changesOf(repository);
+        long id = repository.idOf(domain);
+        if (pending.removed.containsKey(id)) {
+            throw new IllegalStateException(String.format("Aggregate %d is registered as removed", id));
+        }
+        if (pending.added.containsKey(id)) {
+            pending.added.put(id, domain);
+        } else {
+            pending.dirty.put(id, domain);
+        }
+    }
+    
+    /**
+     * Schedules a delete. Removing an aggregate registered as new cancels its insert.
+     */
+    public <DOMAIN extends Aggregate> void registerRemoved(CommonRepository<?, DOMAIN, ?> repository, DOMAIN domain) {
+        Changes<DOMAIN> pending = changesOf(repository);
+        long id = repository.idOf(domain);
+        pending.dirty.remove(id);
+        if (pending.added.remove(id) == null) {
+            pending.removed.put(id, domain);
+        }
+    }
+    
+    /**
+     * Writes every registered change in one transaction and clears the unit of work.
+     * If any write fails the transaction is rolled back and the registered changes are kept; the repositories
+     * clear dirty fields and keep advanced versions only once the transaction commits, so calling commit
+     * again writes the same changes.
+     */
+    public void commit() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Changes<?>> ordered = new ArrayList<>(changes.values());
+        ordered.sort(Comparator.comparing(pending -> pending.repository.tableInfo().getTableName()));
+        transaction.executeWithoutResult(status -> {
+            ordered.forEach(Changes::insert);
+            ordered.forEach(Changes::update);
+            ordered.forEach(Changes::delete);
+        });
+        if (log.isDebugEnabled()) {
+            log.debug("unit of work committed across {} tables", ordered.size());
+        }
+        changes.clear();
+    }
+    
+    /**
+     * Discards every registered change.
+     */
+    public void clear() {
+        changes.clear();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <DOMAIN extends Aggregate> Changes<DOMAIN> changesOf(CommonRepository<?, DOMAIN, ?> repository) {
+        return (Changes<DOMAIN>) changes.computeIfAbsent(repository, Changes::new);
+    }
+    
+    /**
+     * Changes registered against one repository, keyed and sorted by id.
+     */
+    private static final class Changes<DOMAIN extends Aggregate> {
+        
+        private final CommonRepository<?, DOMAIN, ?> repository;
+        private final Map<Long, DOMAIN> added = new TreeMap<>();
+        private final Map<Long, DOMAIN> dirty = new TreeMap<>();
+        private final Map<Long, DOMAIN> removed = new TreeMap<>();
+        
+        @SuppressWarnings("unchecked")
+        private Changes(CommonRepository<?, ?, ?> repository) {
+            this.repository = (CommonRepository<?, DOMAIN, ?>) repository;
+        }
+        
+        private void insert() {
+            if (!added.isEmpty()) {
+                repository.saveAll(new ArrayList<>(added.values()));
+            }
+        }
+        
+        private void update() {
+            if (!dirty.isEmpty()) {
+                repository.updateAll(new ArrayList<>(dirty.values()));
+            }
+        }
+        
+        private void delete() {
+            if (!removed.isEmpty()) {
+                repository.deleteByIds(removed.keySet());
+            }
+        }
+    }
+}
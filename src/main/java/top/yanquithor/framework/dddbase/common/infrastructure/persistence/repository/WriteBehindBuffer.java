@@ -0,0 +1,448 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.support.TransactionOperations;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for aggregates updated at a high rate, such as counters and heartbeats.
+ * Updates are kept in memory by id, so repeated updates of one aggregate collapse into its latest state,
+ * and are written with {@link CommonRepository#updateAll} once {@code maxBatchSize} ids are pending or
+ * every {@code flushInterval}, whichever comes first.
+ * <p>
+ * The flush lag is bounded by {@code maxLag}: when the oldest pending update is older than that, for example
+ * because the database is slow or flushes keep failing, the updating thread flushes synchronously after
+ * buffering its update. Pending updates are flushed by {@link #close()}, so register the buffer as a Spring bean
+ * or close it on shutdown. Updates still pending when the process dies are lost.
+ * <p>
+ * When a batch fails, it is written again in halves down to single rows, so the healthy rows get through and
+ * only the failing ones are put back. A row that fails on its own {@code maxAttempts} times, for example on a
+ * constraint violation or a version conflict, is dropped with an error log and counted in
+ * {@link #getDroppedUpdates()}. Failures because the database cannot be reached do not count as attempts.
+ * Each write runs in the given transaction, so that a failed batch leaves nothing behind; without one, rows
+ * of a failed batch that did go through are written again, which on versioned tables fails as a conflict.
+ * <p>
+ * Create buffers with {@link #start}, which also schedules the periodic flush.
+ *
+ * @param <DOMAIN> Aggregate type
+ */
+@Slf4j
+public class WriteBehindBuffer<DOMAIN extends Aggregate> implements AutoCloseable {
+    
+    private final CommonRepository<?, DOMAIN, ?> repository;
+    private final TransactionOperations transaction;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long maxLagNanos;
+    private final long flushIntervalNanos;
+    private final ScheduledExecutorService flusher;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock(); // Keeps flushes of one buffer in order
+    // Insertion order is kept when an id is updated again, so the first entry is always the oldest
+    private LinkedHashMap<Long, Pending<DOMAIN>> pending = new LinkedHashMap<>();
+    private Map<Long, Pending<DOMAIN>> flushing = Map.of(); // Batch being written, still visible to peek
+    private final Set<Long> discarded = new HashSet<>(); // Ids of the batch being written discarded meanwhile
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+    
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder(); // Updates replaced by a later update of the same id
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder droppedUpdates = new LongAdder();
+    private final LongAccumulator maxObservedLagNanos = new LongAccumulator(Math::max, 0);
+    
+    private WriteBehindBuffer(CommonRepository<?, DOMAIN, ?> repository, int maxBatchSize,
+                              Duration flushInterval, Duration maxLag, TransactionOperations transaction,
+                              int maxAttempts) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("max batch size must be greater than 0");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("max attempts must be greater than 0");
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero() || maxLag.compareTo(flushInterval) < 0) {
+            throw new IllegalArgumentException("flush interval must be positive and not greater than max lag");
+        }
+        this.repository = repository;
+        this.transaction = transaction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.maxLagNanos = maxLag.toNanos();
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Creates a buffer that writes without a transaction and gives up on a row after 5 failed attempts,
+     * and starts its periodic flush.
+     *
+     * @param repository    Repository the updates are written to
+     * @param maxBatchSize  Pending ids that trigger a flush
+     * @param flushInterval Time between periodic flushes
+     * @param maxLag        Longest time an update may stay unwritten before callers flush synchronously,
+     *                      at least the flush interval
+     */
+    public static <DOMAIN extends Aggregate> WriteBehindBuffer<DOMAIN> start(
+            CommonRepository<?, DOMAIN, ?> repository, int maxBatchSize, Duration flushInterval, Duration maxLag) {
+        return start(repository, maxBatchSize, flushInterval, maxLag, TransactionOperations.withoutTransaction(), 5);
+    }
+    
+    /**
+     * Creates a buffer and starts its periodic flush.
+     *
+     * @param repository    Repository the updates are written to
+     * @param maxBatchSize  Pending ids that trigger a flush
+     * @param flushInterval Time between periodic flushes
+     * @param maxLag        Longest time an update may stay unwritten before callers flush synchronously,
+     *                      at least the flush interval
+     * @param transaction   Transaction each write runs in, normally a {@code TransactionTemplate}
+     * @param maxAttempts   Failed writes of a single row after which its update is dropped
+     */
+    public static <DOMAIN extends Aggregate> WriteBehindBuffer<DOMAIN> start(
+            CommonRepository<?, DOMAIN, ?> repository, int maxBatchSize, Duration flushInterval, Duration maxLag,
+            TransactionOperations transaction, int maxAttempts) {
+        WriteBehindBuffer<DOMAIN> buffer = new WriteBehindBuffer<>(repository, maxBatchSize, flushInterval, maxLag,
+                transaction, maxAttempts);
+        buffer.flusher.scheduleWithFixedDelay(buffer::flushQuietly, buffer.flushIntervalNanos,
+                buffer.flushIntervalNanos, TimeUnit.NANOSECONDS);
+        return buffer;
+    }
+    
+    /**
+     * Buffers the aggregate's current state for a later batched update. When the oldest pending update is
+     * older than {@code maxLag}, the caller then flushes synchronously; the update stays buffered whether
+     * or not that flush succeeds, a failure is only logged and retried by the next flush.
+     *
+     * @param domain Updated aggregate
+     * @return The same aggregate
+     * @throws IllegalStateException If the buffer is closed
+     */
+    public DOMAIN update(DOMAIN domain) {
+        if (domain == null) {
+            throw new RuntimeException("domain is null");
+        }
+        long id = repository.idOf(domain);
+        long now = System.nanoTime();
+        int size;
+        long oldest;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("write-behind buffer is closed");
+            }
+            Pending<DOMAIN> previous = pending.get(id);
+            if (previous == null) {
+                pending.put(id, new Pending<>(domain, now));
+            } else {
+                previous.domain = domain;
+                coalesced.increment();
+            }
+            size = pending.size();
+            oldest = pending.firstEntry().getValue().enqueuedAt;
+        } finally {
+            lock.unlock();
+        }
+        enqueued.increment();
+        
+        if (now - oldest > maxLagNanos) {
+            // Background flushing is not keeping up, apply backpressure to the writer
+            flushQuietly();
+        } else if (size >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return domain;
+    }
+    
+    /**
+     * @return Latest buffered state of the aggregate, including one being flushed right now,
+     * null if it has no pending update
+     */
+    public DOMAIN peek(long id) {
+        lock.lock();
+        try {
+            Pending<DOMAIN> entry = pending.get(id);
+            if (entry == null) {
+                entry = flushing.get(id);
+            }
+            return entry == null ? null : entry.domain;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Drops the aggregate's pending update, e.g. because it is being deleted. If a flush is writing the
+     * aggregate right now, waits for it to end and keeps a failed flush from putting the update back,
+     * so that a delete following this call is not overwritten by the flush.
+     */
+    public void discard(DOMAIN domain) {
+        long id = repository.idOf(domain);
+        boolean inFlight;
+        lock.lock();
+        try {
+            pending.remove(id);
+            inFlight = flushing.containsKey(id);
+            if (inFlight) {
+                discarded.add(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (inFlight) {
+            flushLock.lock();
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * Writes every pending update now. If the batch fails, its healthy rows are still written and the
+     * failing ones are put back, unless the same id has been updated again meanwhile or the row has used up
+     * its attempts, and retried by the next flush.
+     *
+     * @throws RuntimeException The repository's error if a row could not be written
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            Map<Long, Pending<DOMAIN>> batch;
+            List<DOMAIN> domains;
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                flushing = batch;
+                // Built under the lock, so a discard either removed the id before or waits for this flush
+                domains = new ArrayList<>(batch.size());
+                for (Pending<DOMAIN> entry : batch.values()) {
+                    domains.add(entry.domain);
+                    maxObservedLagNanos.accumulate(now - entry.enqueuedAt);
+                }
+            } finally {
+                lock.unlock();
+            }
+            
+            try {
+                write(domains);
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                Map<Long, RuntimeException> failures = new LinkedHashMap<>();
+                if (isUnavailable(e) || batch.size() == 1) {
+                    batch.keySet().forEach(id -> failures.put(id, e));
+                } else {
+                    isolate(new ArrayList<>(batch.entrySet()), failures);
+                }
+                if (!failures.isEmpty()) {
+                    requeue(batch, failures);
+                    throw failures.values().iterator().next();
+                }
+            } finally {
+                lock.lock();
+                try {
+                    flushing = Map.of();
+                    discarded.clear();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void write(List<DOMAIN> domains) {
+        transaction.executeWithoutResult(status -> repository.updateAll(domains));
+        flushedRows.add(domains.size());
+    }
+    
+    /**
+     * Writes the entries of a failed batch again in halves, down to single rows, and collects the rows
+     * that still fail. A half that fails because the database cannot be reached is not split further.
+     */
+    private void isolate(List<Map.Entry<Long, Pending<DOMAIN>>> entries, Map<Long, RuntimeException> failures) {
+        int middle = entries.size() / 2;
+        for (List<Map.Entry<Long, Pending<DOMAIN>>> half : List.of(entries.subList(0, middle),
+                entries.subList(middle, entries.size()))) {
+            if (half.isEmpty()) {
+                continue;
+            }
+            List<DOMAIN> domains = new ArrayList<>(half.size());
+            half.forEach(entry -> domains.add(entry.getValue().domain));
+            try {
+                write(domains);
+            } catch (RuntimeException e) {
+                if (half.size() == 1 || isUnavailable(e)) {
+                    half.forEach(entry -> failures.put(entry.getKey(), e));
+                } else {
+                    isolate(half, failures);
+                }
+            }
+        }
+    }
+    
+    private void requeue(Map<Long, Pending<DOMAIN>> batch, Map<Long, RuntimeException> failures) {
+        lock.lock();
+        try {
+            // Failed entries are older than anything buffered meanwhile, so they go first
+            LinkedHashMap<Long, Pending<DOMAIN>> merged = new LinkedHashMap<>();
+            for (Map.Entry<Long, RuntimeException> failure : failures.entrySet()) {
+                long id = failure.getKey();
+                Pending<DOMAIN> entry = batch.get(id);
+                if (discarded.contains(id)) {
+                    continue;
+                }
+                if (!isUnavailable(failure.getValue()) && ++entry.attempts >= maxAttempts && !pending.containsKey(id)) {
+                    droppedUpdates.increment();
+                    log.error("write-behind update of id {} dropped after {} failed attempts", id, entry.attempts,
+                            failure.getValue());
+                    continue;
+                }
+                merged.put(id, entry);
+            }
+            // A newer update of a failed id replaces the failed one and starts with a fresh count
+            merged.putAll(pending);
+            pending = merged;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return True if the write failed because the database could not be reached, not because of the row
+     */
+    private static boolean isUnavailable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TransientDataAccessResourceException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("write-behind flush failed, {} ids pending", pendingCount(), e);
+        }
+    }
+    
+    /**
+     * @return Number of ids with an unwritten update
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return Total number of buffered updates
+     */
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+    
+    /**
+     * @return Updates that never reached the database because a later update of the same id replaced them
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+    
+    /**
+     * @return Rows written by successful flushes
+     */
+    public long getFlushedRows() {
+        return flushedRows.sum();
+    }
+    
+    public long getFailedFlushes() {
+        return failedFlushes.sum();
+    }
+    
+    /**
+     * @return Updates given up after failing {@code maxAttempts} times on their own
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates.sum();
+    }
+    
+    /**
+     * @return Longest time an update waited in the buffer before being flushed
+     */
+    public Duration getMaxObservedLag() {
+        return Duration.ofNanos(maxObservedLagNanos.get());
+    }
+    
+    /**
+     * Rejects further updates and writes the pending ones.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("write-behind flusher did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.debug("write-behind buffer closed, {} updates enqueued, {} coalesced, {} rows flushed",
+                getEnqueued(), getCoalesced(), getFlushedRows());
+    }
+    
+    private static final class Pending<DOMAIN> {
+        
+        private DOMAIN domain;
+        private final long enqueuedAt; // Time of the first unwritten update, later updates keep it
+        private int attempts; // Failed writes of this row on its own
+        
+        private Pending(DOMAIN domain, long enqueuedAt) {
+            this.domain = domain;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends reads to the replica with the lowest recent latency, tracked as an exponentially weighted moving average
+ * of observed read times. A small share of reads still goes to a random replica, so a replica that was slow
+ * once gets measured again and can win traffic back.
+ */
+public class LeastLatencyReplicaSelector implements ReplicaSelector {
+    
+    private static final double ALPHA = 0.2; // Weight of the newest sample
+    private static final double EXPLORE_RATE = 0.05;
+    
+    private final Map<String, Double> averageNanos = new ConcurrentHashMap<>();
+    
+    @Override
+    public String select(List<String> replicas) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < EXPLORE_RATE) {
+            return replicas.get(random.nextInt(replicas.size()));
+        }
+        String best = null;
+        double bestNanos = Double.MAX_VALUE;
+        for (String replica : replicas) {
+            // Unmeasured replicas count as fastest so each one gets sampled
+            double nanos = averageNanos.getOrDefault(replica, 0.0);
+            if (nanos < bestNanos) {
+                best = replica;
+                bestNanos = nanos;
+            }
+        }
+        return best;
+    }
+    
+    @Override
+    public void record(String replica, long elapsedNanos) {
+        averageNanos.merge(replica, (double) elapsedNanos,
+                (average, sample) -> average + ALPHA * (sample - average));
+    }
+    
+    /**
+     * @return Current average read latency per measured replica, in nanoseconds
+     */
+    public Map<String, Double> averageLatencies() {
+        return Map.copyOf(averageNanos);
+    }
+}
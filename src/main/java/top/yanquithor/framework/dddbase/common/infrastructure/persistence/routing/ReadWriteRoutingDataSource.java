@@ -0,0 +1,83 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source that sends reads wrapped in {@link RoutingContext#read} and read-only transactions to a replica,
+ * and everything else to the primary. Reads stay on the primary inside a read-write transaction, and for
+ * {@code stickiness} after the current thread wrote, so a caller always sees its own writes despite replication lag.
+ * <p>
+ * A transaction manager takes its connection before the transaction is marked read-only, so wrap the routing
+ * data source in a {@code LazyConnectionDataSourceProxy}, which defers the choice to the first statement.
+ * <pre>{@code
+ * @Bean
+ * DataSource dataSource(DataSource primary, DataSource replica1, DataSource replica2) {
+ *     return new LazyConnectionDataSourceProxy(ReadWriteRoutingDataSource.of(primary,
+ *             Map.of("replica1", replica1, "replica2", replica2), ReplicaSelector.leastLatency(), Duration.ofSeconds(1)));
+ * }
+ * }</pre>
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    
+    public static final String PRIMARY = "primary";
+    
+    private final List<String> replicas;
+    private final ReplicaSelector selector;
+    private final long stickinessNanos;
+    
+    private ReadWriteRoutingDataSource(List<String> replicas, ReplicaSelector selector, Duration stickiness) {
+        this.replicas = replicas;
+        this.selector = selector;
+        this.stickinessNanos = stickiness.toNanos();
+    }
+    
+    /**
+     * Creates an initialized routing data source.
+     *
+     * @param primary    Writable primary
+     * @param replicas   Read replicas by name, may be empty
+     * @param selector   Picks the replica for each read
+     * @param stickiness How long a thread's reads stay on the primary after it wrote, roughly the replication lag
+     */
+    public static ReadWriteRoutingDataSource of(DataSource primary, Map<String, DataSource> replicas,
+                                                ReplicaSelector selector, Duration stickiness) {
+        if (replicas.containsKey(PRIMARY)) {
+            throw new IllegalArgumentException("replica name '" + PRIMARY + "' is reserved");
+        }
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(
+                List.copyOf(replicas.keySet()), selector, stickiness);
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        dataSource.setTargetDataSources(targets);
+        dataSource.setDefaultTargetDataSource(primary);
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || RoutingContext.wroteWithin(stickinessNanos)) {
+            return PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // All statements of a transaction share its connection, so only its read-only flag counts
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return PRIMARY;
+            }
+        } else if (!RoutingContext.isRead()) {
+            return PRIMARY;
+        }
+        String replica = selector.select(replicas);
+        if (RoutingContext.isRead()) {
+            RoutingContext.selected(selector, replica);
+        }
+        return replica;
+    }
+}
@@ -0,0 +1,29 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import java.util.List;
+
+/**
+ * Picks the replica that serves a read.
+ */
+public interface ReplicaSelector {
+    
+    /**
+     * @param replicas Names of the configured replicas, never empty
+     * @return One of the names
+     */
+    String select(List<String> replicas);
+    
+    /**
+     * Receives the duration of a read served by the replica.
+     */
+    default void record(String replica, long elapsedNanos) {
+    }
+    
+    static ReplicaSelector roundRobin() {
+        return new RoundRobinReplicaSelector();
+    }
+    
+    static ReplicaSelector leastLatency() {
+        return new LeastLatencyReplicaSelector();
+    }
+}
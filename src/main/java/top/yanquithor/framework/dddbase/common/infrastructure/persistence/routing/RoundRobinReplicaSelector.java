@@ -0,0 +1,17 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads reads evenly over the replicas.
+ */
+public class RoundRobinReplicaSelector implements ReplicaSelector {
+    
+    private final AtomicInteger next = new AtomicInteger();
+    
+    @Override
+    public String select(List<String> replicas) {
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+}
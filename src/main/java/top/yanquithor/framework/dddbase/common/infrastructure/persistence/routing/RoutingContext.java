@@ -0,0 +1,168 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread routing state read by {@link ReadWriteRoutingDataSource}.
+ * Repositories wrap their read paths in {@link #read(Supplier)} and call {@link #markWrite()} after writing;
+ * without a routing data source both are no-ops apart from a thread-local update.
+ * <p>
+ * Work handed to another thread takes the state along through {@link #capture()} and {@link Snapshot#call}.
+ * The write time is shared, not copied, so a write on the other thread also keeps the caller's reads
+ * on the primary.
+ * <p>
+ * A write inside a transaction becomes visible to replicas only once it commits, so the write time is stamped
+ * again when the transaction completes and the stickiness window counts from then.
+ */
+public final class RoutingContext {
+    
+    private static final long NEVER = Long.MIN_VALUE;
+    
+    private static final ThreadLocal<Boolean> READ = new ThreadLocal<>();
+    // System.nanoTime of the last write, shared with the threads running captured work
+    private static final ThreadLocal<AtomicLong> LAST_WRITE = new ThreadLocal<>();
+    private static final ThreadLocal<Selection> SELECTION = new ThreadLocal<>(); // Replica picked for the current read
+    // Transaction resource key marking that the completion stamp is already registered
+    private static final Object COMPLETION_STAMP = new Object();
+    
+    private RoutingContext() {
+    }
+    
+    /**
+     * Runs a read that may be served by a replica, and reports its latency to the replica selector.
+     */
+    public static <T> T read(Supplier<T> query) {
+        Boolean outer = READ.get();
+        if (outer != null) {
+            return query.get();
+        }
+        READ.set(Boolean.TRUE);
+        long start = System.nanoTime();
+        try {
+            return query.get();
+        } finally {
+            READ.remove();
+            Selection selection = SELECTION.get();
+            if (selection != null) {
+                SELECTION.remove();
+                selection.selector().record(selection.replica(), System.nanoTime() - start);
+            }
+        }
+    }
+    
+    /**
+     * Records that the current thread wrote to the primary, which keeps its reads on the primary
+     * for the routing data source's stickiness window. Inside a transaction the write is recorded again
+     * when the transaction completes.
+     */
+    public static void markWrite() {
+        AtomicLong clock = writeClock();
+        clock.set(System.nanoTime());
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(COMPLETION_STAMP)) {
+            TransactionSynchronizationManager.bindResource(COMPLETION_STAMP, clock);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(COMPLETION_STAMP);
+                    clock.set(System.nanoTime());
+                }
+            });
+        }
+    }
+    
+    /**
+     * @return Routing state of the current thread, to run work on another thread with
+     */
+    public static Snapshot capture() {
+        return new Snapshot(READ.get() != null, writeClock());
+    }
+    
+    static boolean isRead() {
+        return READ.get() != null;
+    }
+    
+    /**
+     * @return True if the current thread wrote within the given window
+     */
+    static boolean wroteWithin(long windowNanos) {
+        AtomicLong clock = LAST_WRITE.get();
+        if (clock == null) {
+            return false;
+        }
+        long lastWrite = clock.get();
+        return lastWrite != NEVER && System.nanoTime() - lastWrite < windowNanos;
+    }
+    
+    static void selected(ReplicaSelector selector, String replica) {
+        SELECTION.set(new Selection(selector, replica));
+    }
+    
+    private static AtomicLong writeClock() {
+        AtomicLong clock = LAST_WRITE.get();
+        if (clock == null) {
+            clock = new AtomicLong(NEVER);
+            LAST_WRITE.set(clock);
+        }
+        return clock;
+    }
+    
+    private record Selection(ReplicaSelector selector, String replica) {
+    }
+    
+    /**
+     * Routing state captured on one thread and applied to work running on another.
+     */
+    public static final class Snapshot {
+        
+        private final boolean read;
+        private final AtomicLong lastWrite;
+        
+        private Snapshot(boolean read, AtomicLong lastWrite) {
+            this.read = read;
+            this.lastWrite = lastWrite;
+        }
+        
+        /**
+         * Combines the states of several callers served by one query, such as a coalesced load:
+         * the query stays on the primary if any of them wrote recently.
+         *
+         * @param snapshots Captured states, not empty
+         * @return State with the latest write of all snapshots, reading if any of them was
+         */
+        public static Snapshot latest(Collection<Snapshot> snapshots) {
+            boolean read = false;
+            long lastWrite = NEVER;
+            for (Snapshot snapshot : snapshots) {
+                read |= snapshot.read;
+                long candidate = snapshot.lastWrite.get();
+                if (candidate != NEVER && (lastWrite == NEVER || candidate - lastWrite > 0)) {
+                    lastWrite = candidate;
+                }
+            }
+            return new Snapshot(read, new AtomicLong(lastWrite));
+        }
+        
+        /**
+         * Runs the task on the current thread with the captured state, then restores the thread's own state.
+         */
+        public <T> T call(Supplier<T> task) {
+            AtomicLong outerClock = LAST_WRITE.get();
+            LAST_WRITE.set(lastWrite);
+            try {
+                return read ? read(task) : task.get();
+            } finally {
+                if (outerClock == null) {
+                    LAST_WRITE.remove();
+                } else {
+                    LAST_WRITE.set(outerClock);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+import top.yanquithor.framework.dddbase.common.domain.repository.BaseRepository;
+import top.yanquithor.framework.dddbase.common.domain.repository.CountMode;
+import top.yanquithor.framework.dddbase.common.domain.repository.CountResult;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository.CommonRepository;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing.RoutingContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Repository spread over several databases, one {@link CommonRepository} per shard.
+ * Single-aggregate operations go to the shard chosen by the {@link ShardingStrategy}; bulk operations are split
+ * per shard, and counts and multi-id loads fan out to the shards in parallel on a bounded executor. Scans prefetch
+ * on virtual threads of their own, so a long scan never holds up the fan-out queries of other callers.
+ * <p>
+ * The id decides the shard, so aggregates must carry their id, e.g. from a {@code SnowFlake}, before they are
+ * saved; an id left for the database to assign would send every new row to the same shard.
+ * <p>
+ * Writes spanning several shards are not atomic: each shard commits on its own.
+ *
+ * @param <DOMAIN> Aggregate type
+ */
+@Slf4j
+public class ShardedRepository<DOMAIN extends Aggregate> implements BaseRepository<DOMAIN>, AutoCloseable {
+    
+    private final List<CommonRepository<?, DOMAIN, ?>> shards;
+    private final ShardingStrategy strategy;
+    private final ExecutorService executor;
+    private final ExecutorService scanExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("shard-scan-", 0).factory());
+    
+    /**
+     * @param shards      One repository per shard, in a fixed order
+     * @param strategy    Maps ids to shard indexes
+     * @param parallelism Threads used for count and multi-id fan-out across all callers, scans excluded
+     */
+    public ShardedRepository(List<? extends CommonRepository<?, DOMAIN, ?>> shards, ShardingStrategy strategy,
+                             int parallelism) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be greater than 0");
+        }
+        this.shards = List.copyOf(shards);
+        this.strategy = strategy;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fanout-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * @return Repository of the shard that stores the id
+     */
+    public CommonRepository<?, DOMAIN, ?> shardFor(long id) {
+        return shards.get(strategy.shardOf(id, shards.size()));
+    }
+    
+    private CommonRepository<?, DOMAIN, ?> shardFor(DOMAIN domain) {
+        return shards.get(shardOf(domain));
+    }
+    
+    /**
+     * @throws IllegalArgumentException If the aggregate has no id yet
+     */
+    private int shardOf(DOMAIN domain) {
+        if (domain == null) {
+            throw new RuntimeException("domain is null");
+        }
+        long id = shards.getFirst().idOf(domain);
+        if (id == 0) {
+            throw new IllegalArgumentException("aggregate has no id, assign it before writing to a sharded repository");
+        }
+        return strategy.shardOf(id, shards.size());
+    }
+    
+    @Override
+    public DOMAIN save(DOMAIN domain) {
+        return shardFor(domain).save(domain);
+    }
+    
+    @Override
+    public List<DOMAIN> saveAll(Collection<DOMAIN> domains) {
+        return writePerShard(domains, CommonRepository::saveAll);
+    }
+    
+    @Override
+    public Long count(DOMAIN domain) {
+        return count(domain, CountMode.EXACT).value();
+    }
+    
+    /**
+     * Sums the counts of all shards. The result is labelled with the least accurate mode any shard reported,
+     * and with the oldest measurement time.
+     */
+    @Override
+    public CountResult count(DOMAIN domain, CountMode mode) {
+        List<CountResult> counts = fanOut(shard -> shard.count(domain, mode));
+        long total = 0;
+        CountMode merged = CountMode.EXACT;
+        Instant measuredAt = Instant.MAX;
+        for (CountResult count : counts) {
+            total += count.value();
+            if (count.mode() == CountMode.ESTIMATED || (count.mode() == CountMode.CACHED && merged == CountMode.EXACT)) {
+                merged = count.mode();
+            }
+            if (count.measuredAt().isBefore(measuredAt)) {
+                measuredAt = count.measuredAt();
+            }
+        }
+        return new CountResult(total, merged, measuredAt);
+    }
+    
+    @Override
+    public DOMAIN update(DOMAIN domain) {
+        return shardFor(domain).update(domain);
+    }
+    
+    @Override
+    public List<DOMAIN> updateAll(Collection<DOMAIN> domains) {
+        return writePerShard(domains, CommonRepository::updateAll);
+    }
+    
+    @Override
+    public DOMAIN delete(DOMAIN domain) {
+        return shardFor(domain).delete(domain);
+    }
+    
+    @Override
+    public long deleteByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        long deleted = 0;
+        for (Map.Entry<Integer, List<Long>> entry : groupIds(ids).entrySet()) {
+            deleted += shards.get(entry.getKey()).deleteByIds(entry.getValue());
+        }
+        return deleted;
+    }
+    
+    @Override
+    public DOMAIN getById(long id) {
+        return shardFor(id).getById(id);
+    }
+    
+    @Override
+    public List<DOMAIN> getByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, List<Long>> groups = groupIds(ids);
+        RoutingContext.Snapshot context = RoutingContext.capture();
+        List<CompletableFuture<List<DOMAIN>>> loads = new ArrayList<>(groups.size());
+        List<List<Long>> requested = new ArrayList<>(groups.size());
+        for (Map.Entry<Integer, List<Long>> entry : groups.entrySet()) {
+            CommonRepository<?, DOMAIN, ?> shard = shards.get(entry.getKey());
+            loads.add(CompletableFuture.supplyAsync(() -> context.call(() -> shard.getByIds(entry.getValue())), executor));
+            requested.add(entry.getValue());
+        }
+        Map<Long, DOMAIN> byId = HashMap.newHashMap(ids.size());
+        for (int i = 0; i < loads.size(); i++) {
+            List<DOMAIN> found = join(loads.get(i));
+            List<Long> shardIds = requested.get(i);
+            for (int j = 0; j < shardIds.size(); j++) {
+                byId.put(shardIds.get(j), found.get(j));
+            }
+        }
+        List<DOMAIN> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            result.add(id == null ? null : byId.get(id));
+        }
+        return result;
+    }
+    
+    /**
+     * Merges the shards' scans into one stream in global id order. Each shard fetches its next batch in the
+     * background while the current one is consumed, so at most two batches per shard are held in memory.
+     * A scan has at most one fetch in flight per shard, which bounds its threads by the shard count.
+     */
+    @Override
+    public Stream<DOMAIN> scan(DOMAIN probe, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be greater than 0");
+        }
+        List<ShardCursor> cursors = new ArrayList<>(shards.size());
+        for (CommonRepository<?, DOMAIN, ?> shard : shards) {
+            cursors.add(new ShardCursor(shard.scan(probe, batchSize), batchSize));
+        }
+        MergingIterator iterator = new MergingIterator(cursors);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false)
+                .onClose(() -> cursors.forEach(ShardCursor::close));
+    }
+    
+    private List<DOMAIN> writePerShard(Collection<DOMAIN> domains,
+                                       BiFunction<CommonRepository<?, DOMAIN, ?>, Collection<DOMAIN>, List<DOMAIN>> writer) {
+        if (domains == null || domains.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, List<DOMAIN>> groups = new HashMap<>();
+        Map<Integer, List<Integer>> positions = new HashMap<>(); // Input index of each grouped domain
+        int index = 0;
+        for (DOMAIN domain : domains) {
+            int shard = shardOf(domain);
+            groups.computeIfAbsent(shard, k -> new ArrayList<>()).add(domain);
+            positions.computeIfAbsent(shard, k -> new ArrayList<>()).add(index++);
+        }
+        List<DOMAIN> written = new ArrayList<>(Collections.nCopies(domains.size(), null));
+        for (Map.Entry<Integer, List<DOMAIN>> entry : groups.entrySet()) {
+            List<DOMAIN> shardWritten = writer.apply(shards.get(entry.getKey()), entry.getValue());
+            List<Integer> shardPositions = positions.get(entry.getKey());
+            for (int i = 0; i < shardPositions.size(); i++) {
+                written.set(shardPositions.get(i), shardWritten.get(i));
+            }
+        }
+        return written;
+    }
+    
+    private Map<Integer, List<Long>> groupIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> groups = new HashMap<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null) {
+                groups.computeIfAbsent(strategy.shardOf(id, shards.size()), k -> new ArrayList<>()).add(id);
+            }
+        }
+        return groups;
+    }
+    
+    private <T> List<T> fanOut(Function<CommonRepository<?, DOMAIN, ?>, T> query) {
+        RoutingContext.Snapshot context = RoutingContext.capture();
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (CommonRepository<?, DOMAIN, ?> shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> context.call(() -> query.apply(shard)), executor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+    
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+    
+    /**
+     * Stops the fan-out threads and the prefetches of open scans.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        scanExecutor.shutdownNow();
+    }
+    
+    /**
+     * One shard's scan, read a batch at a time with the next batch prefetched on a virtual thread.
+     */
+    private class ShardCursor {
+        
+        private final Stream<DOMAIN> stream;
+        private final Iterator<DOMAIN> rows;
+        private final int batchSize;
+        private final RoutingContext.Snapshot context = RoutingContext.capture(); // Of the thread opening the scan
+        private List<DOMAIN> batch = List.of();
+        private int position;
+        private CompletableFuture<List<DOMAIN>> prefetch;
+        private DOMAIN head;
+        private long headId;
+        
+        private ShardCursor(Stream<DOMAIN> stream, int batchSize) {
+            this.stream = stream;
+            this.rows = stream.iterator();
+            this.batchSize = batchSize;
+            this.prefetch = fetch();
+        }
+        
+        private CompletableFuture<List<DOMAIN>> fetch() {
+            // The iterator is only touched by one fetch at a time, handed over through join()
+            return CompletableFuture.supplyAsync(() -> context.call(() -> {
+                List<DOMAIN> next = new ArrayList<>(batchSize);
+                while (next.size() < batchSize && rows.hasNext()) {
+                    next.add(rows.next());
+                }
+                return next;
+            }), scanExecutor);
+        }
+        
+        /**
+         * Moves to the next row.
+         *
+         * @return False once the shard is exhausted
+         */
+        private boolean advance() {
+            if (position == batch.size()) {
+                if (prefetch == null) {
+                    return false;
+                }
+                batch = join(prefetch);
+                position = 0;
+                prefetch = batch.size() < batchSize ? null : fetch();
+                if (batch.isEmpty()) {
+                    return false;
+                }
+            }
+            head = batch.get(position++);
+            headId = shards.getFirst().idOf(head);
+            return true;
+        }
+        
+        private void close() {
+            if (prefetch != null) {
+                prefetch.cancel(false);
+            }
+            stream.close();
+        }
+    }
+    
+    /**
+     * K-way merge of the shard cursors by id.
+     */
+    private class MergingIterator implements Iterator<DOMAIN> {
+        
+        private final PriorityQueue<ShardCursor> queue;
+        private final List<ShardCursor> pending; // Cursors not yet positioned on their first row
+        
+        private MergingIterator(List<ShardCursor> cursors) {
+            this.queue = new PriorityQueue<>(cursors.size(), Comparator.comparingLong(cursor -> cursor.headId));
+            this.pending = new ArrayList<>(cursors);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (!pending.isEmpty()) {
+                for (ShardCursor cursor : pending) {
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+                pending.clear();
+            }
+            return !queue.isEmpty();
+        }
+        
+        @Override
+        public DOMAIN next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ShardCursor cursor = queue.poll();
+            DOMAIN next = cursor.head;
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.sharding;
+
+import top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake.SnowFlakeLayout;
+
+/**
+ * Maps an aggregate id to the shard that stores it. The mapping must never change for a given shard count,
+ * otherwise existing rows can no longer be found.
+ */
+@FunctionalInterface
+public interface ShardingStrategy {
+    
+    /**
+     * @param id         Aggregate id
+     * @param shardCount Number of shards
+     * @return Shard index in {@code [0, shardCount)}
+     */
+    int shardOf(long id, int shardCount);
+    
+    /**
+     * Spreads ids evenly over the shards by a mixed hash of the whole id.
+     */
+    static ShardingStrategy hash() {
+        return (id, shardCount) -> {
+            // Finalizer of SplitMix64, so sequential SnowFlake ids do not cluster on one shard
+            long hash = id;
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            hash = hash ^ (hash >>> 31);
+            return (int) Math.floorMod(hash, (long) shardCount);
+        };
+    }
+    
+    /**
+     * Places each id on the shard of the worker that generated it, so each node writes to its own shard.
+     *
+     * @param layout Bit layout of the SnowFlake ids
+     */
+    static ShardingStrategy workerBits(SnowFlakeLayout layout) {
+        return (id, shardCount) -> (int) (layout.workerIdOf(id) % shardCount);
+    }
+}
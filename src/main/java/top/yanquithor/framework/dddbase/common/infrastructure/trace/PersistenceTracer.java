@@ -0,0 +1,87 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.trace;
+
+import com.alibaba.fastjson2.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Debug tracing for the persistence path that costs nothing while DEBUG is off.
+ * <p>
+ * Callers guard every trace with {@link #enabled()}, so no message arguments are built unless the record
+ * will be kept. Kept records are sampled, serialized to JSON on the caller's thread so they show the state
+ * at the time of the call, and handed to a shared asynchronous ring buffer that writes them to the log.
+ * The sample rate is shared by all tracers and set with {@link #setSampleRate(int)}.
+ * <pre>{@code
+ * if (TRACER.enabled()) {
+ *     TRACER.trace("insert {} to database", aDo);
+ * }
+ * }</pre>
+ */
+public final class PersistenceTracer {
+    
+    private static volatile int sampleRate = 1;
+    
+    private final Logger logger;
+    
+    private PersistenceTracer(Logger logger) {
+        this.logger = logger;
+    }
+    
+    public static PersistenceTracer of(Class<?> type) {
+        return new PersistenceTracer(LoggerFactory.getLogger(type));
+    }
+    
+    /**
+     * @return True if DEBUG is on for this logger and the current call is sampled
+     */
+    public boolean enabled() {
+        if (!logger.isDebugEnabled()) {
+            return false;
+        }
+        int rate = sampleRate;
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+    
+    /**
+     * Serializes the payload to JSON and queues the record, which is written to the log off the caller's thread.
+     *
+     * @param message SLF4J message pattern with one {@code {}} placeholder for the payload
+     * @param payload Object to serialize
+     */
+    public void trace(String message, Object payload) {
+        String json;
+        try {
+            json = JSON.toJSONString(payload);
+        } catch (RuntimeException e) {
+            logger.debug("Failed to serialize trace payload for: {}", message, e);
+            return;
+        }
+        TraceRingBuffer.INSTANCE.offer(logger, message, json);
+    }
+    
+    /**
+     * Keeps one in {@code sampleRate} records of every tracer, 1 keeps all of them.
+     */
+    public static void setSampleRate(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sample rate must be greater than 0");
+        }
+        PersistenceTracer.sampleRate = sampleRate;
+    }
+    
+    /**
+     * @return Current sample rate shared by all tracers
+     */
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+    
+    /**
+     * @return Records dropped because the shared ring buffer was full
+     */
+    public static long getDroppedRecords() {
+        return TraceRingBuffer.INSTANCE.getDropped();
+    }
+}
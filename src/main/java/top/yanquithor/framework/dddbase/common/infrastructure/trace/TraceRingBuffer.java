@@ -0,0 +1,100 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer that moves trace records off the caller's thread.
+ * A daemon thread writes the already serialized payloads to the originating logger. When the ring
+ * is full new records are dropped and counted rather than blocking the persistence path.
+ */
+@Slf4j
+final class TraceRingBuffer {
+    
+    private static final int CAPACITY = 1 << 13;
+    private static final int MASK = CAPACITY - 1;
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    static final TraceRingBuffer INSTANCE = new TraceRingBuffer();
+    
+    private final Record[] records = new Record[CAPACITY];
+    // Per-slot sequence: equals the slot's next write position when free, position + 1 when published
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private long tail; // Only touched by the drainer thread
+    private volatile Thread drainer;
+    
+    private TraceRingBuffer() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    boolean offer(Logger logger, String message, String payload) {
+        ensureDrainer();
+        while (true) {
+            long position = head.get();
+            int slot = (int) (position & MASK);
+            long sequence = sequences.get(slot);
+            if (sequence < position) {
+                dropped.increment(); // Ring is full
+                return false;
+            }
+            if (sequence == position && head.compareAndSet(position, position + 1)) {
+                records[slot] = new Record(logger, message, payload);
+                sequences.set(slot, position + 1);
+                return true;
+            }
+        }
+    }
+    
+    long getDropped() {
+        return dropped.sum();
+    }
+    
+    private void ensureDrainer() {
+        if (drainer == null) {
+            synchronized (this) {
+                if (drainer == null) {
+                    Thread thread = new Thread(this::drain, "ddd-trace-drainer");
+                    thread.setDaemon(true);
+                    thread.start();
+                    drainer = thread;
+                }
+            }
+        }
+    }
+    
+    private void drain() {
+        long idlePark = MIN_IDLE_PARK_NANOS;
+        while (true) {
+            int slot = (int) (tail & MASK);
+            if (sequences.get(slot) != tail + 1) {
+                LockSupport.parkNanos(idlePark);
+                idlePark = Math.min(idlePark * 2, MAX_IDLE_PARK_NANOS); // Back off while idle
+                continue;
+            }
+            idlePark = MIN_IDLE_PARK_NANOS;
+            Record record = records[slot];
+            records[slot] = null;
+            sequences.set(slot, tail + CAPACITY);
+            tail++;
+            try {
+                record.logger().debug(record.message(), record.payload());
+            } catch (RuntimeException e) {
+                log.warn("Failed to write trace record: {}", record.message(), e);
+            }
+        }
+    }
+    
+    private record Record(Logger logger, String message, String payload) {
+    }
+}
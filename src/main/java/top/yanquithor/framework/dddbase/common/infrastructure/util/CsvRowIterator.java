@@ -0,0 +1,80 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Lazy iterator over the rows of a CSV file, reading one record at a time.
+ * The file is closed once the last row has been read, or earlier by {@link #close()}.
+ *
+ * @param <E> Row type
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public final class CsvRowIterator<E> implements Iterator<E>, Closeable {
+    
+    private final CsvTokenizer tokens;
+    private final Function<CsvTokenizer, E> mapper;
+    private E next;
+    private boolean done;
+    
+    /**
+     * @param tokens Tokenizer over the file, positioned before the first data record
+     * @param mapper Maps the tokenizer's current record to a row, may return null to skip it
+     */
+    CsvRowIterator(CsvTokenizer tokens, Function<CsvTokenizer, E> mapper) {
+        this.tokens = tokens;
+        this.mapper = mapper;
+    }
+    
+    /**
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    @Override
+    public boolean hasNext() {
+        while (next == null && !done) {
+            boolean found;
+            try {
+                found = tokens.next();
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Error occurred while reading CSV file", e);
+            }
+            if (found) {
+                next = mapper.apply(tokens);
+            } else {
+                close();
+            }
+        }
+        return next != null;
+    }
+    
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        E row = next;
+        next = null;
+        return row;
+    }
+    
+    /**
+     * Closes the file. Further calls to {@link #hasNext()} return false.
+     */
+    @Override
+    public void close() {
+        if (!done) {
+            done = true;
+            try {
+                tokens.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error occurred while closing CSV file", e);
+            }
+        }
+    }
+}
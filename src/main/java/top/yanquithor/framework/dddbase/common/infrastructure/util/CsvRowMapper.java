@@ -0,0 +1,349 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import lombok.extern.slf4j.Slf4j;
+import top.yanquithor.framework.dddbase.common.domain.model.valueobject.Money;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps CSV records to objects of one class for one header layout.
+ * <p>
+ * Everything that depends only on the class and the header is worked out once, when the mapper is compiled:
+ * which column feeds which field, the converter for each field type and the method handles that create the
+ * object and set its fields. Mapping a row is then a walk over an array of bindings. Mappers are cached per
+ * class and header, and are immutable, so one mapper can serve several threads.
+ * <p>
+ * Plain classes need a no-argument constructor and are filled field by field; records are created through
+ * their canonical constructor. Columns are matched to fields declared by the class itself by trimmed name,
+ * and when a header repeats, the last column wins. Blank values leave primitives at zero and other fields null.
+ *
+ * @param <E> Row type
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+@Slf4j
+final class CsvRowMapper<E> implements Function<String[], E> {
+    
+    private static final int MAX_CACHED_MAPPERS = 256;
+    private static final Map<MapperKey, CsvRowMapper<?>> CACHE = new ConcurrentHashMap<>();
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    
+    private final Class<E> type;
+    private final MethodHandle factory; // () -> Object for classes, (Object[]) -> Object for records
+    private final boolean record;
+    private final Object[] defaults; // Per record component, zero for primitives
+    private final Binding[] bindings;
+    
+    private CsvRowMapper(Class<E> type, MethodHandle factory, boolean record, Object[] defaults, Binding[] bindings) {
+        this.type = type;
+        this.factory = factory;
+        this.record = record;
+        this.defaults = defaults;
+        this.bindings = bindings;
+    }
+    
+    /**
+     * @param type    Row type
+     * @param headers Header fields as read from the file
+     * @return Cached mapper for the class and header
+     * @throws IllegalArgumentException If the class cannot be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    static <E> CsvRowMapper<E> of(Class<E> type, String[] headers) {
+        MapperKey key = new MapperKey(type, Arrays.stream(headers).map(String::trim).toList());
+        CsvRowMapper<?> mapper = CACHE.get(key);
+        if (mapper == null) {
+            mapper = compile(type, key.headers());
+            if (CACHE.size() >= MAX_CACHED_MAPPERS) {
+                CACHE.clear();
+            }
+            CACHE.put(key, mapper);
+        }
+        return (CsvRowMapper<E>) mapper;
+    }
+    
+    /**
+     * @param values Fields of one record
+     * @return Mapped row, null if the object could not be created
+     */
+    @Override
+    public E apply(String[] values) {
+        return map(null, values);
+    }
+    
+    /**
+     * Maps the tokenizer's current record, converting numbers straight from its field slices.
+     *
+     * @param tokens Tokenizer positioned on a record
+     * @return Mapped row, null if the object could not be created
+     */
+    E map(CsvTokenizer tokens) {
+        return map(tokens, null);
+    }
+    
+    private E map(CsvTokenizer tokens, String[] values) {
+        int fieldCount = tokens != null ? tokens.fieldCount() : values.length;
+        try {
+            if (record) {
+                Object[] arguments = defaults.clone();
+                for (Binding binding : bindings) {
+                    if (binding.column < fieldCount) {
+                        Object value = convert(binding, tokens != null ? tokens.field(binding.column) : values[binding.column]);
+                        if (value != null) {
+                            arguments[binding.target] = value;
+                        }
+                    }
+                }
+                return type.cast((Object) factory.invokeExact(arguments));
+            }
+            Object instance = (Object) factory.invokeExact();
+            for (Binding binding : bindings) {
+                if (binding.column < fieldCount) {
+                    Object value = convert(binding, tokens != null ? tokens.field(binding.column) : values[binding.column]);
+                    binding.setter.invokeExact(instance, value != null ? value : binding.blank);
+                }
+            }
+            return type.cast(instance);
+        } catch (Throwable e) {
+            log.error("Error creating instance of class: {}", type.getName(), e);
+            return null;
+        }
+    }
+    
+    private static Object convert(Binding binding, CharSequence value) {
+        if (value == null) {
+            return null;
+        }
+        // Trims like String.trim, without creating the trimmed string
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        try {
+            return binding.converter.convert(value, start, end);
+        } catch (RuntimeException e) {
+            log.error("Error converting value '{}' for field: {}", value.subSequence(start, end), binding.name, e);
+            return null;
+        }
+    }
+    
+    private static <E> CsvRowMapper<E> compile(Class<E> type, List<String> headers) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            columns.put(headers.get(i), i);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            return type.isRecord() ? compileRecord(type, lookup, columns) : compileClass(type, lookup, columns);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot map CSV rows to " + type.getName(), e);
+        }
+    }
+    
+    private static <E> CsvRowMapper<E> compileClass(Class<E> type, MethodHandles.Lookup lookup,
+                                                    Map<String, Integer> columns) throws ReflectiveOperationException {
+        MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        List<Binding> bindings = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            Integer column = columns.get(field.getName());
+            if (column == null || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            FieldConverter converter = converterFor(field.getType());
+            if (converter == null) {
+                log.warn("Unsupported type: {} for field: {}, column is skipped", field.getType(), field.getName());
+                continue;
+            }
+            field.setAccessible(true);
+            MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            bindings.add(new Binding(column, -1, field.getName(), defaultValue(field.getType()), converter, setter));
+        }
+        return new CsvRowMapper<>(type, constructor, false, new Object[0], bindings.toArray(new Binding[0]));
+    }
+    
+    private static <E> CsvRowMapper<E> compileRecord(Class<E> type, MethodHandles.Lookup lookup,
+                                                     Map<String, Integer> columns) throws ReflectiveOperationException {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        Object[] defaults = new Object[components.length];
+        List<Binding> bindings = new ArrayList<>();
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            parameterTypes[i] = component.getType();
+            defaults[i] = defaultValue(component.getType());
+            Integer column = columns.get(component.getName());
+            if (column == null) {
+                continue;
+            }
+            FieldConverter converter = converterFor(component.getType());
+            if (converter == null) {
+                log.warn("Unsupported type: {} for field: {}, column is skipped", component.getType(), component.getName());
+                continue;
+            }
+            bindings.add(new Binding(column, i, component.getName(), defaults[i], converter, null));
+        }
+        Constructor<E> canonical = type.getDeclaredConstructor(parameterTypes);
+        MethodHandle constructor = lookup.unreflectConstructor(canonical)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new CsvRowMapper<>(type, constructor, true, defaults, bindings.toArray(new Binding[0]));
+    }
+    
+    /**
+     * @return Converter of a trimmed, non-blank range, null if the type is not supported
+     */
+    private static FieldConverter converterFor(Class<?> targetType) {
+        if (targetType == int.class || targetType == Integer.class) {
+            return (value, start, end) -> Integer.parseInt(value, start, end, 10);
+        } else if (targetType == long.class || targetType == Long.class) {
+            return (value, start, end) -> Long.parseLong(value, start, end, 10);
+        } else if (targetType == char.class || targetType == Character.class) {
+            return (value, start, end) -> value.charAt(start);
+        }
+        Function<String, Object> parser = parserFor(targetType);
+        return parser == null ? null : (value, start, end) -> parser.apply(text(value, start, end));
+    }
+    
+    private static String text(CharSequence value, int start, int end) {
+        if (value instanceof String string && start == 0 && end == string.length()) {
+            return string;
+        }
+        return value.subSequence(start, end).toString();
+    }
+    
+    /**
+     * @return Parser of a trimmed, non-blank value, null if the type is not supported
+     */
+    private static Function<String, Object> parserFor(Class<?> targetType) {
+        if (targetType == String.class) {
+            return value -> value;
+        } else if (targetType == double.class || targetType == Double.class) {
+            return Double::valueOf;
+        } else if (targetType == float.class || targetType == Float.class) {
+            return Float::valueOf;
+        } else if (targetType == boolean.class || targetType == Boolean.class) {
+            return Boolean::valueOf;
+        } else if (targetType == byte.class || targetType == Byte.class) {
+            return Byte::valueOf;
+        } else if (targetType == short.class || targetType == Short.class) {
+            return Short::valueOf;
+        } else if (targetType == BigDecimal.class) {
+            return BigDecimal::new;
+        } else if (targetType == BigInteger.class) {
+            return BigInteger::new;
+        } else if (targetType == Money.class) {
+            return CsvRowMapper::parseMoney;
+        } else if (targetType == LocalDateTime.class) {
+            // Database exports often use a space instead of the ISO 'T'
+            return value -> LocalDateTime.parse(value.length() > 10 && value.charAt(10) == ' '
+                    ? value.substring(0, 10) + 'T' + value.substring(11) : value);
+        } else if (targetType == LocalDate.class) {
+            return LocalDate::parse;
+        } else if (targetType.isEnum()) {
+            return enumConverter(targetType);
+        }
+        return null;
+    }
+    
+    /**
+     * Matches constant names exactly, then ignoring case.
+     */
+    private static Function<String, Object> enumConverter(Class<?> enumType) {
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : enumType.getEnumConstants()) {
+            constants.putIfAbsent(((Enum<?>) constant).name().toUpperCase(Locale.ROOT), constant);
+        }
+        for (Object constant : enumType.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+        return value -> {
+            Object constant = constants.get(value);
+            if (constant == null) {
+                constant = constants.get(value.toUpperCase(Locale.ROOT));
+            }
+            if (constant == null) {
+                throw new IllegalArgumentException("No constant " + value + " in " + enumType.getName());
+            }
+            return constant;
+        };
+    }
+    
+    /**
+     * Accepts {@code 12.50 USD}, {@code USD 12.50} or a bare amount without currency.
+     */
+    private static Money parseMoney(String value) {
+        int space = value.indexOf(' ');
+        if (space < 0) {
+            return new Money(new BigDecimal(value), null);
+        }
+        String first = value.substring(0, space);
+        String second = value.substring(space + 1).trim();
+        boolean amountFirst = !first.isEmpty() && (Character.isDigit(first.charAt(0))
+                || first.charAt(0) == '-' || first.charAt(0) == '+' || first.charAt(0) == '.');
+        return amountFirst ? new Money(new BigDecimal(first), second) : new Money(new BigDecimal(second), first);
+    }
+    
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+    
+    private record MapperKey(Class<?> type, List<String> headers) {
+    }
+    
+    @FunctionalInterface
+    private interface FieldConverter {
+        
+        Object convert(CharSequence value, int start, int end);
+    }
+    
+    /**
+     * Column feeding one field: {@code target} is the record component index, {@code setter} the field setter
+     * of a plain class, and {@code blank} the value for a blank column.
+     */
+    private record Binding(int column, int target, String name, Object blank,
+                           FieldConverter converter, MethodHandle setter) {
+    }
+}
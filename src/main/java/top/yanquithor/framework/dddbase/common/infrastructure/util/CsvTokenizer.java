@@ -0,0 +1,319 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits UTF-8 CSV input into records and fields without allocating per row.
+ * <p>
+ * Bytes are scanned straight from a reusable buffer, which grows only when a single record does not fit,
+ * up to a maximum record size that stops an unterminated quote from swallowing the rest of the input.
+ * After {@link #next()}, each field is available as a {@link CharSequence} slice that stays valid until the
+ * next call: fields that are plain ASCII without quotes are read directly from the byte buffer, the others are
+ * unquoted and decoded once into a reusable char buffer. Strings are only created by {@link #fieldAsString(int)},
+ * {@link #fields()} or a slice's {@code toString()}.
+ * <p>
+ * A quote toggles quoting anywhere in a field and a doubled quote inside quotes stands for one quote, so
+ * separators and line breaks inside quotes belong to the field. Records end with {@code \n} or {@code \r\n};
+ * a blank line is a record with one empty field. The separator and quote must be ASCII characters.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public final class CsvTokenizer implements Closeable {
+    
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final int INITIAL_FIELDS = 16;
+    
+    private final InputStream in;
+    private final byte separator;
+    private final byte quote;
+    private final int maxRecordSize;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    
+    private byte[] buffer;
+    private int limit; // Bytes read into the buffer
+    private int recordStart; // Absolute offset of the current record
+    private int recordLength; // Bytes of the current record including its line break
+    private boolean eof;
+    
+    // Per field of the current record: offsets relative to recordStart, or into chars when decoded
+    private int fieldCount;
+    private int[] starts = new int[INITIAL_FIELDS];
+    private int[] ends = new int[INITIAL_FIELDS];
+    private boolean[] decoded = new boolean[INITIAL_FIELDS];
+    private Slice[] slices = new Slice[0];
+    private char[] chars = new char[256];
+    private int charsUsed;
+    private byte[] unquoted = new byte[256];
+    
+    /**
+     * Tokenizes comma-separated input with double quotes.
+     *
+     * @param in UTF-8 input, closed by {@link #close()}
+     */
+    public CsvTokenizer(InputStream in) {
+        this(in, ',', '"');
+    }
+    
+    /**
+     * @param in        UTF-8 input, closed by {@link #close()}
+     * @param separator Field separator, ASCII
+     * @param quote     Quote character, ASCII
+     */
+    public CsvTokenizer(InputStream in, char separator, char quote) {
+        this(in, separator, quote, DEFAULT_MAX_RECORD_SIZE);
+    }
+    
+    /**
+     * @param in            UTF-8 input, closed by {@link #close()}
+     * @param separator     Field separator, ASCII
+     * @param quote         Quote character, ASCII
+     * @param maxRecordSize Bytes a single record may take including its line break, 64 MB by default
+     */
+    public CsvTokenizer(InputStream in, char separator, char quote, int maxRecordSize) {
+        if (maxRecordSize < 1) {
+            throw new IllegalArgumentException("max record size must be greater than 0");
+        }
+        if (separator > 0x7f || quote > 0x7f || separator == quote || separator == '\n' || quote == '\n') {
+            throw new IllegalArgumentException("separator and quote must be distinct ASCII characters other than line breaks");
+        }
+        this.in = in;
+        this.separator = (byte) separator;
+        this.quote = (byte) quote;
+        this.maxRecordSize = maxRecordSize;
+        this.buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, maxRecordSize)];
+    }
+    
+    /**
+     * Advances to the next record. Slices of the previous record become invalid.
+     *
+     * @return False at the end of the input
+     * @throws IOException If the input cannot be read, or a record exceeds the maximum record size
+     */
+    public boolean next() throws IOException {
+        recordStart += recordLength;
+        recordLength = 0;
+        fieldCount = 0;
+        charsUsed = 0;
+        if (recordStart == limit && !fill()) {
+            return false;
+        }
+        
+        int position = 0; // Relative to recordStart, which fill() may move
+        int fieldStart = 0;
+        boolean insideQuotes = false;
+        boolean plain = true; // ASCII without quotes, readable in place
+        while (true) {
+            if (recordStart + position == limit && !fill()) {
+                int end = position > fieldStart && buffer[recordStart + position - 1] == '\r' ? position - 1 : position;
+                addField(fieldStart, end, plain);
+                recordLength = position;
+                return true;
+            }
+            byte b = buffer[recordStart + position];
+            if (b == quote) {
+                plain = false;
+                insideQuotes = !insideQuotes;
+            } else if (insideQuotes) {
+                if (b < 0) {
+                    plain = false;
+                }
+            } else if (b == separator) {
+                addField(fieldStart, position, plain);
+                fieldStart = position + 1;
+                plain = true;
+            } else if (b == '\n') {
+                int end = position > fieldStart && buffer[recordStart + position - 1] == '\r' ? position - 1 : position;
+                addField(fieldStart, end, plain);
+                recordLength = position + 1;
+                return true;
+            } else if (b < 0) {
+                plain = false;
+            }
+            position++;
+        }
+    }
+    
+    /**
+     * @return Number of fields of the current record
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * @param index Field index
+     * @return Field of the current record, valid until the next call to {@link #next()}
+     */
+    public CharSequence field(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("field " + index + " of " + fieldCount);
+        }
+        return slices[index];
+    }
+    
+    /**
+     * @param index Field index
+     * @return Field of the current record as a string
+     */
+    public String fieldAsString(int index) {
+        return field(index).toString();
+    }
+    
+    /**
+     * @return All fields of the current record as strings
+     */
+    public String[] fields() {
+        String[] values = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            values[i] = slices[i].toString();
+        }
+        return values;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    /**
+     * Reads more input, first moving the current record to the front of the buffer or growing the buffer.
+     *
+     * @return False if the input is exhausted
+     * @throws IOException If the current record already takes the maximum record size
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (recordStart > 0) {
+            System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+            limit -= recordStart;
+            recordStart = 0;
+        } else if (limit == buffer.length) {
+            if (buffer.length == maxRecordSize) {
+                throw new IOException("CSV record exceeds " + maxRecordSize + " bytes, probably an unterminated quote");
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxRecordSize));
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read == 0) {
+            // Streams may return nothing without blocking; a single-byte read blocks until data or the end
+            int b = in.read();
+            if (b >= 0) {
+                buffer[limit] = (byte) b;
+            }
+            read = b < 0 ? -1 : 1;
+        }
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+    
+    private void addField(int start, int end, boolean plain) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            decoded = Arrays.copyOf(decoded, fieldCount * 2);
+        }
+        if (fieldCount == slices.length) {
+            slices = Arrays.copyOf(slices, Math.max(INITIAL_FIELDS, slices.length * 2));
+            for (int i = fieldCount; i < slices.length; i++) {
+                slices[i] = new Slice(i);
+            }
+        }
+        if (plain) {
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+        } else {
+            decode(start, end);
+        }
+        decoded[fieldCount] = !plain;
+        fieldCount++;
+    }
+    
+    /**
+     * Drops the quoting of a field and decodes it into the char buffer.
+     */
+    private void decode(int start, int end) {
+        if (unquoted.length < end - start) {
+            unquoted = new byte[Math.max(end - start, unquoted.length * 2)];
+        }
+        int length = 0;
+        boolean insideQuotes = false;
+        for (int i = recordStart + start, last = recordStart + end; i < last; i++) {
+            byte b = buffer[i];
+            if (b != quote) {
+                unquoted[length++] = b;
+            } else if (insideQuotes && i + 1 < last && buffer[i + 1] == quote) {
+                unquoted[length++] = quote;
+                i++;
+            } else {
+                insideQuotes = !insideQuotes;
+            }
+        }
+        
+        // UTF-8 never yields more chars than bytes
+        if (chars.length - charsUsed < length) {
+            chars = Arrays.copyOf(chars, Math.max(charsUsed + length, chars.length * 2));
+        }
+        CharBuffer target = CharBuffer.wrap(chars, charsUsed, chars.length - charsUsed);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(unquoted, 0, length), target, true);
+        decoder.flush(target);
+        starts[fieldCount] = charsUsed;
+        ends[fieldCount] = target.position();
+        charsUsed = target.position();
+    }
+    
+    /**
+     * View of one field of the current record.
+     */
+    private final class Slice implements CharSequence {
+        
+        private final int index;
+        
+        private Slice(int index) {
+            this.index = index;
+        }
+        
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+        
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= length()) {
+                throw new IndexOutOfBoundsException(i);
+            }
+            return decoded[index] ? chars[starts[index] + i] : (char) buffer[recordStart + starts[index] + i];
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+        
+        @Override
+        public String toString() {
+            return decoded[index]
+                    ? new String(chars, starts[index], length())
+                    : new String(buffer, recordStart + starts[index], length(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
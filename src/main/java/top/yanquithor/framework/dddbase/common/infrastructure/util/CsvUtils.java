@@ -6,7 +6,12 @@ import org.springframework.stereotype.Component;
 import java.io.*;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * CSV utility class that provides CSV file reading and object mapping functionality.
@@ -17,6 +22,7 @@ public class CsvUtils {
     
     private static final char DEFAULT_SEPARATOR = ',';
     private static final char DEFAULT_QUOTE = '"';
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
     /**
      * Reads a CSV file and maps it to a list of objects of the specified type
@@ -27,33 +33,9 @@ public class CsvUtils {
      */
     public <E> List<E> readCsv(Class<E> clazz, File csvFile) {
         List<E> result = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
-            String csvHeader = reader.readLine();
-            if (csvHeader == null || csvHeader.trim().isEmpty()) {
-                log.warn("CSV file is empty or has no header information");
-                return result;
-            }
-            
-            log.debug("CSV Header: \"{}\"", csvHeader);
-            String[] headers = parseLine(csvHeader);
-            Map<String, Integer> headerIndexMap = createHeaderIndexMap(headers);
-            
-            // 获取类的字段映射
-            Map<String, Field> fieldMap = createFieldMap(clazz, headers);
-            
-            String line;
-            int lineNum = 0;
-            while ((line = reader.readLine()) != null) {
-                log.debug("CSV Line {}: \"{}\"", ++lineNum, line);
-                String[] values = parseLine(line);
-                
-                // 创建对象实例并设置字段值
-                E instance = createInstance(clazz, headers, values, fieldMap, headerIndexMap);
-                if (instance != null) {
-                    result.add(instance);
-                }
-            }
-        } catch (IOException e) {
+        try {
+            readCsv(clazz, csvFile, result::add);
+        } catch (UncheckedIOException e) {
             log.error("Error occurred while reading CSV file", e);
         } catch (Exception e) {
             log.error("Error occurred while processing CSV file", e);
@@ -62,190 +44,183 @@ public class CsvUtils {
     }
     
     /**
-     * Parses a CSV line, correctly handling quotes and escapes
-     *
-     * @param line CSV line data
-     * @return Parsed field array
+     * Lazily reads a CSV file as objects of the specified type, one row at a time.
+     * Close the iterator when stopping early; it closes itself after the last row
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param <E> Object type
+     * @return Iterator over the mapped rows, rows that cannot be mapped are skipped
+     * @throws UncheckedIOException If the file cannot be read
+     * @throws IllegalArgumentException If the type has neither a no-argument constructor nor is a record
      */
-    private String[] parseLine(String line) {
-        List<String> fields = new ArrayList<>();
-        StringBuilder currentField = new StringBuilder();
-        boolean insideQuotes = false;
-        int i = 0;
-        
-        while (i < line.length()) {
-            char c = line.charAt(i);
-            
-            if (c == CsvUtils.DEFAULT_QUOTE) {
-                // 检查是否是转义的引号（连续两个引号）
-                if (insideQuotes && i + 1 < line.length() && line.charAt(i + 1) == CsvUtils.DEFAULT_QUOTE) {
-                    currentField.append(CsvUtils.DEFAULT_QUOTE);
-                    i += 2; // 跳过两个引号
-                } else {
-                    // 切换引号状态
-                    insideQuotes = !insideQuotes;
-                    i++;
-                }
-            } else if (c == CsvUtils.DEFAULT_SEPARATOR && !insideQuotes) {
-                // 遇到分隔符且不在引号内，则为字段结束
-                fields.add(currentField.toString());
-                currentField.setLength(0); // 清空StringBuilder
-                i++;
-            } else {
-                currentField.append(c);
-                i++;
+    public <E> CsvRowIterator<E> iterateCsv(Class<E> clazz, File csvFile) {
+        CsvTokenizer tokens = openTokenizer(csvFile);
+        try {
+            String[] headers = tokens.next() ? tokens.fields() : null;
+            if (isBlank(headers)) {
+                log.warn("CSV file is empty or has no header information");
+                CsvRowIterator<E> rows = new CsvRowIterator<>(tokens, record -> null);
+                rows.close();
+                return rows;
             }
+            
+            log.debug("CSV Header: {}", Arrays.toString(headers));
+            CsvRowMapper<E> rowMapper = CsvRowMapper.of(clazz, headers);
+            return new CsvRowIterator<>(tokens, rowMapper::map);
+        } catch (IOException e) {
+            closeQuietly(tokens);
+            throw new UncheckedIOException("Error occurred while reading CSV file", e);
+        } catch (RuntimeException e) {
+            closeQuietly(tokens);
+            throw e;
         }
-        
-        // 添加最后一个字段
-        fields.add(currentField.toString());
-        
-        return fields.toArray(new String[0]);
     }
     
     /**
-     * Creates a mapping from header fields to their indices
-     * @param headers Header field array
-     * @return Mapping from header fields to indices
+     * Lazily reads a CSV file as a stream of objects of the specified type.
+     * The file stays open until the stream is closed, so use it in a try-with-resources block
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param <E> Object type
+     * @return Stream of the mapped rows
+     * @throws UncheckedIOException If the file cannot be read
      */
-    private Map<String, Integer> createHeaderIndexMap(String[] headers) {
-        Map<String, Integer> headerIndexMap = new HashMap<>();
-        for (int i = 0; i < headers.length; i++) {
-            headerIndexMap.put(headers[i].trim(), i);
-        }
-        return headerIndexMap;
+    public <E> Stream<E> streamCsv(Class<E> clazz, File csvFile) {
+        return toStream(iterateCsv(clazz, csvFile));
     }
     
     /**
-     * Creates a mapping from class fields to Field objects
-     * @param clazz Type
-     * @param headers CSV header fields
-     * @return Mapping from field names to Field objects
+     * Reads a CSV file and hands each mapped object to the consumer, keeping only one row in memory
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param consumer Receives each row
+     * @param <E> Object type
+     * @return Number of rows delivered
+     * @throws UncheckedIOException If the file cannot be read
      */
-    private Map<String, Field> createFieldMap(Class<?> clazz, String[] headers) {
-        Map<String, Field> fieldMap = new HashMap<>();
-        
-        // 获取所有声明的字段（包括私有字段）
-        Field[] declaredFields = clazz.getDeclaredFields();
-        Set<String> headerSet = new HashSet<>();
-        for (String header : headers) {
-            headerSet.add(header.trim());
-        }
-        
-        for (Field field : declaredFields) {
-            // 检查字段名是否在CSV头部中存在
-            if (headerSet.contains(field.getName())) {
-                field.setAccessible(true); // 允许访问私有字段
-                fieldMap.put(field.getName(), field);
-            }
+    public <E> long readCsv(Class<E> clazz, File csvFile, Consumer<? super E> consumer) {
+        try (CsvRowIterator<E> rows = iterateCsv(clazz, csvFile)) {
+            return deliver(rows, consumer);
         }
-        
-        return fieldMap;
     }
     
     /**
-     * Creates a class instance and sets field values
-     * @param clazz Type
-     * @param headers Header fields
-     * @param values Field values
-     * @param fieldMap Field mapping
-     * @param headerIndexMap Header index mapping
+     * Reads a CSV file and hands the mapped objects to the consumer in lists of {@code batchSize} rows,
+     * e.g. to insert each list with one batched statement
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param batchSize Rows per list, the last list may be shorter
+     * @param batchConsumer Receives each list, which it may keep
      * @param <E> Object type
-     * @return Created object instance
+     * @return Number of rows delivered
+     * @throws UncheckedIOException If the file cannot be read
      */
-    private <E> E createInstance(Class<E> clazz, String[] headers, String[] values, 
-                                 Map<String, Field> fieldMap, Map<String, Integer> headerIndexMap) {
-        try {
-            E instance = clazz.getDeclaredConstructor().newInstance();
-            
-            for (String header : headers) {
-                String trimmedHeader = header.trim();
-                Integer index = headerIndexMap.get(trimmedHeader);
-                
-                if (index != null && index < values.length) {
-                    Field field = fieldMap.get(trimmedHeader);
-                    if (field != null) {
-                        String value = values[index];
-                        setFieldValue(instance, field, value);
-                    }
-                }
-            }
-            
-            return instance;
-        } catch (Exception e) {
-            log.error("Error creating instance of class: {}", clazz.getName(), e);
-            return null;
+    public <E> long readCsvInBatches(Class<E> clazz, File csvFile, int batchSize, Consumer<? super List<E>> batchConsumer) {
+        checkBatchSize(batchSize);
+        try (CsvRowIterator<E> rows = iterateCsv(clazz, csvFile)) {
+            return deliverInBatches(rows, batchSize, batchConsumer);
         }
     }
     
     /**
-     * Sets object field value
-     * @param instance Object instance
-     * @param field Field
-     * @param value Value string
+     * Reads a large CSV file on the common fork-join pool by memory-mapping it and parsing
+     * record-aligned ranges of it in parallel. Quoted fields may span lines.
+     * The file stays mapped until the stream is closed, so use it in a try-with-resources block
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param ordered True to keep the file's row order, false to receive rows as soon as their range is parsed
+     * @param <E> Object type
+     * @return Stream of the mapped rows
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    public <E> Stream<E> streamCsvParallel(Class<E> clazz, File csvFile, boolean ordered) {
+        return streamCsvParallel(clazz, csvFile, ordered, ForkJoinPool.commonPool(), ParallelCsvReader.DEFAULT_CHUNK_SIZE);
+    }
+    
+    /**
+     * Reads a large CSV file in parallel, see {@link #streamCsvParallel(Class, File, boolean)}
+     * @param clazz Target object type
+     * @param csvFile CSV file
+     * @param ordered True to keep the file's row order, false to receive rows as soon as their range is parsed
+     * @param pool Pool that scans and parses the file, at most twice its parallelism of ranges are held at once
+     * @param chunkSize Bytes per parsed range, before aligning to record boundaries
      * @param <E> Object type
+     * @return Stream of the mapped rows
+     * @throws UncheckedIOException If the file cannot be read
      */
-    private <E> void setFieldValue(E instance, Field field, String value) {
+    public <E> Stream<E> streamCsvParallel(Class<E> clazz, File csvFile, boolean ordered, ForkJoinPool pool, int chunkSize) {
+        ParallelCsvReader reader = ParallelCsvReader.open(csvFile, pool, chunkSize, DEFAULT_SEPARATOR, DEFAULT_QUOTE);
         try {
-            Class<?> fieldType = field.getType();
-            
-            // 尝试将字符串值转换为对应类型
-            Object convertedValue = convertValue(value, fieldType);
+            String[] headers = reader.header();
+            if (isBlank(headers)) {
+                log.warn("CSV file is empty or has no header information");
+                reader.close();
+                return Stream.empty();
+            }
             
-            field.set(instance, convertedValue);
-        } catch (IllegalAccessException e) {
-            log.error("Cannot set field value for field: {}", field.getName(), e);
-        } catch (Exception e) {
-            log.error("Error converting value '{}' for field: {}", value, field.getName(), e);
+            CsvRowMapper<E> rowMapper = CsvRowMapper.of(clazz, headers);
+            return reader.stream(rowMapper::map, ordered);
+        } catch (RuntimeException e) {
+            reader.close();
+            throw e;
         }
     }
     
-    /**
-     * Converts a string value to the specified type
-     * @param value String value
-     * @param targetType Target type
-     * @return Converted value
-     */
-    private Object convertValue(String value, Class<?> targetType) {
-        if (value == null || value.trim().isEmpty()) {
-            // 如果值为空，根据类型返回默认值
-            if (targetType.isPrimitive()) {
-                if (targetType == int.class || targetType == Integer.class) return 0;
-                if (targetType == long.class || targetType == Long.class) return 0L;
-                if (targetType == double.class || targetType == Double.class) return 0.0;
-                if (targetType == float.class || targetType == Float.class) return 0.0f;
-                if (targetType == boolean.class || targetType == Boolean.class) return false;
-                if (targetType == byte.class || targetType == Byte.class) return (byte) 0;
-                if (targetType == char.class || targetType == Character.class) return '\0';
-                if (targetType == short.class || targetType == Short.class) return (short) 0;
+    private CsvTokenizer openTokenizer(File csvFile) {
+        try {
+            return new CsvTokenizer(new FileInputStream(csvFile), DEFAULT_SEPARATOR, DEFAULT_QUOTE);
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException("Cannot open CSV file: " + csvFile.getAbsolutePath(), e);
+        }
+    }
+    
+    private static boolean isBlank(String[] headers) {
+        return headers == null || headers.length == 1 && headers[0].trim().isEmpty();
+    }
+    
+    private static <E> Stream<E> toStream(CsvRowIterator<E> rows) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rows::close);
+    }
+    
+    private static <E> long deliver(Iterator<E> rows, Consumer<? super E> consumer) {
+        long count = 0;
+        while (rows.hasNext()) {
+            consumer.accept(rows.next());
+            count++;
+        }
+        return count;
+    }
+    
+    private static <E> long deliverInBatches(Iterator<E> rows, int batchSize, Consumer<? super List<E>> batchConsumer) {
+        long count = 0;
+        List<E> batch = new ArrayList<>(batchSize);
+        while (rows.hasNext()) {
+            batch.add(rows.next());
+            if (batch.size() == batchSize) {
+                batchConsumer.accept(batch);
+                count += batch.size();
+                batch = new ArrayList<>(batchSize);
             }
-            return null;
         }
-        
-        value = value.trim();
-        
-        if (targetType == String.class) {
-            return value;
-        } else if (targetType == int.class || targetType == Integer.class) {
-            return Integer.parseInt(value);
-        } else if (targetType == long.class || targetType == Long.class) {
-            return Long.parseLong(value);
-        } else if (targetType == double.class || targetType == Double.class) {
-            return Double.parseDouble(value);
-        } else if (targetType == float.class || targetType == Float.class) {
-            return Float.parseFloat(value);
-        } else if (targetType == boolean.class || targetType == Boolean.class) {
-            return Boolean.parseBoolean(value);
-        } else if (targetType == byte.class || targetType == Byte.class) {
-            return Byte.parseByte(value);
-        } else if (targetType == char.class || targetType == Character.class) {
-            return !value.isEmpty() ? value.charAt(0) : '\0';
-        } else if (targetType == short.class || targetType == Short.class) {
-            return Short.parseShort(value);
-        } else {
-            // 对于其他类型，返回原始字符串值
-            log.warn("Unsupported type: {}, returning string value: {}", targetType, value);
-            return value;
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+            count += batch.size();
+        }
+        return count;
+    }
+    
+    private static void checkBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be greater than 0");
+        }
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.warn("Error occurred while closing CSV file", e);
         }
     }
     
@@ -256,21 +231,64 @@ public class CsvUtils {
      */
     public List<List<String>> readRawCsv(File csvFile) {
         List<List<String>> result = new ArrayList<>();
-        
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] values = parseLine(line);
-                List<String> row = Arrays.asList(values);
-                result.add(row);
-            }
-        } catch (IOException e) {
+        try {
+            readRawCsv(csvFile, result::add);
+        } catch (UncheckedIOException e) {
             log.error("Error occurred while reading CSV file", e);
         }
-        
         return result;
     }
     
+    /**
+     * Lazily reads the raw fields of every CSV record, header included; quoted fields may span lines.
+     * Close the iterator when stopping early; it closes itself after the last record
+     * @param csvFile CSV file
+     * @return Iterator over the records, each as a list of fields
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    public CsvRowIterator<List<String>> iterateRawCsv(File csvFile) {
+        return new CsvRowIterator<>(openTokenizer(csvFile), tokens -> Arrays.asList(tokens.fields()));
+    }
+    
+    /**
+     * Lazily reads the raw fields of every CSV record as a stream, header included.
+     * The file stays open until the stream is closed, so use it in a try-with-resources block
+     * @param csvFile CSV file
+     * @return Stream of records, each as a list of fields
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    public Stream<List<String>> streamRawCsv(File csvFile) {
+        return toStream(iterateRawCsv(csvFile));
+    }
+    
+    /**
+     * Hands the raw fields of every CSV record to the consumer, header included
+     * @param csvFile CSV file
+     * @param consumer Receives each record as a list of fields
+     * @return Number of records delivered
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    public long readRawCsv(File csvFile, Consumer<? super List<String>> consumer) {
+        try (CsvRowIterator<List<String>> rows = iterateRawCsv(csvFile)) {
+            return deliver(rows, consumer);
+        }
+    }
+    
+    /**
+     * Hands the raw fields of the CSV lines to the consumer in lists of {@code batchSize} lines, header included
+     * @param csvFile CSV file
+     * @param batchSize Lines per list, the last list may be shorter
+     * @param batchConsumer Receives each list, which it may keep
+     * @return Number of lines delivered
+     * @throws UncheckedIOException If the file cannot be read
+     */
+    public long readRawCsvInBatches(File csvFile, int batchSize, Consumer<? super List<List<String>>> batchConsumer) {
+        checkBatchSize(batchSize);
+        try (CsvRowIterator<List<String>> rows = iterateRawCsv(csvFile)) {
+            return deliverInBatches(rows, batchSize, batchConsumer);
+        }
+    }
+    
     /**
      * Writes a list of objects to a CSV file
      * @param data List of objects
@@ -320,6 +338,56 @@ public class CsvUtils {
         }
     }
     
+    /**
+     * Streams objects into a CSV file one at a time, so memory use does not depend on the row count
+     * @param rows Objects to write, consumed once
+     * @param clazz Object type
+     * @param outputFile Output file
+     * @param <E> Object type
+     * @return Number of rows written and the throughput achieved
+     * @throws UncheckedIOException If the file cannot be written
+     */
+    public <E> CsvWriteStats writeCsv(Iterator<? extends E> rows, Class<E> clazz, File outputFile) {
+        long start = System.nanoTime();
+        long count = 0;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            Field[] fields = clazz.getDeclaredFields();
+            for (Field field : fields) {
+                field.setAccessible(true); // 允许访问私有字段
+            }
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) line.append(DEFAULT_SEPARATOR);
+                line.append(escapeField(fields[i].getName()));
+            }
+            writer.write(line.toString());
+            writer.newLine();
+            
+            while (rows.hasNext()) {
+                E item = rows.next();
+                line.setLength(0);
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) line.append(DEFAULT_SEPARATOR);
+                    try {
+                        Object value = fields[i].get(item);
+                        line.append(escapeField(value != null ? value.toString() : ""));
+                    } catch (IllegalAccessException e) {
+                        log.error("Cannot access field: {}", fields[i].getName(), e);
+                    }
+                }
+                writer.write(line.toString());
+                writer.newLine();
+                count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error occurred while writing CSV file: " + outputFile.getAbsolutePath(), e);
+        }
+        CsvWriteStats stats = new CsvWriteStats(count, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Streamed {} records to CSV file: {} ({} rows/s)", count, outputFile.getAbsolutePath(),
+                Math.round(stats.rowsPerSecond()));
+        return stats;
+    }
+    
     /**
      * Writes a list of string lists to a CSV file
      * @param data Two-dimensional string list, outer list represents rows, inner list represents fields in each row
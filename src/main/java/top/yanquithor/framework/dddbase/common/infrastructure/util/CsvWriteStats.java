@@ -0,0 +1,19 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a streaming CSV write.
+ *
+ * @param rows    Data rows written, excluding the header
+ * @param elapsed Wall-clock time spent writing
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public record CsvWriteStats(long rows, Duration elapsed) {
+    
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? rows : rows * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,357 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses a CSV file on several threads by memory-mapping it and splitting it into byte ranges that start
+ * on record boundaries.
+ * <p>
+ * A newline only ends a record outside quotes, and whether a byte offset lies inside quotes depends on every
+ * quote before it. So the file is first cut into fixed-size chunks that are scanned in parallel, each noting
+ * the parity of its quote count and its first newline under both possible starting states. A prefix combine of
+ * the parities then tells each chunk its actual starting state, which picks its first real record boundary.
+ * The resulting record-aligned regions are parsed on a {@link ForkJoinPool}, with a bounded number in flight.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+final class ParallelCsvReader implements Closeable {
+    
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int SEGMENT_SHIFT = 30; // The file is mapped in 1 GB segments
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    
+    private final MappedByteBuffer[] segments;
+    private final ForkJoinPool pool;
+    private final char separator;
+    private final char quote;
+    private final String[] header; // First record, null for an empty file
+    private final List<long[]> regions; // [start, end) byte ranges, each holding whole records
+    private volatile boolean closed;
+    
+    private ParallelCsvReader(FileChannel channel, ForkJoinPool pool, int chunkSize,
+                              char separator, char quote) throws IOException {
+        this.pool = pool;
+        this.separator = separator;
+        this.quote = quote;
+        long size = channel.size();
+        this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, size - start));
+        }
+        long headerEnd = endOfRecord(0, size);
+        try (CsvTokenizer tokens = tokenizer(0, headerEnd)) {
+            this.header = tokens.next() ? tokens.fields() : null;
+        }
+        this.regions = splitRegions(headerEnd, size, chunkSize);
+    }
+    
+    /**
+     * Maps the file and finds the record-aligned regions.
+     *
+     * @param csvFile   CSV file
+     * @param pool      Pool that scans and parses the chunks
+     * @param chunkSize Bytes per scanned chunk
+     * @param separator Field separator, must be ASCII
+     * @param quote     Quote character, must be ASCII
+     */
+    static ParallelCsvReader open(File csvFile, ForkJoinPool pool, int chunkSize, char separator, char quote) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be greater than 0");
+        }
+        // Mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            return new ParallelCsvReader(channel, pool, chunkSize, separator, quote);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map CSV file: " + csvFile.getAbsolutePath(), e);
+        }
+    }
+    
+    /**
+     * @return Fields of the header record, null if the file is empty
+     */
+    String[] header() {
+        return header;
+    }
+    
+    /**
+     * @param mapper  Maps the tokenizer's current record to a row, may return null to skip it; called concurrently
+     * @param ordered True to keep file order, false to emit rows as soon as their region is parsed
+     * @return Lazily parsed rows, close it to stop parsing early
+     */
+    <E> Stream<E> stream(Function<CsvTokenizer, E> mapper, boolean ordered) {
+        RegionIterator<E> iterator = new RegionIterator<>(mapper, ordered);
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false)
+                .onClose(this::close);
+    }
+    
+    private long endOfRecord(long from, long to) {
+        boolean insideQuotes = false;
+        for (long position = from; position < to; ) {
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int offset = (int) (position & SEGMENT_MASK);
+            int limit = (int) Math.min(segment.limit(), offset + (to - position));
+            for (int i = offset; i < limit; i++) {
+                byte b = segment.get(i);
+                if (b == quote) {
+                    insideQuotes = !insideQuotes;
+                } else if (b == '\n' && !insideQuotes) {
+                    return position + (i - offset) + 1;
+                }
+            }
+            position += limit - offset;
+        }
+        return to;
+    }
+    
+    private List<long[]> splitRegions(long from, long size, int chunkSize) {
+        List<long[]> result = new ArrayList<>();
+        if (from >= size) {
+            return result;
+        }
+        List<Callable<ChunkScan>> scans = new ArrayList<>();
+        for (long start = from; start < size; start += chunkSize) {
+            long chunkStart = start;
+            long chunkEnd = Math.min(start + chunkSize, size);
+            scans.add(() -> scan(chunkStart, chunkEnd));
+        }
+        List<ChunkScan> chunks = new ArrayList<>(scans.size());
+        for (Future<ChunkScan> future : pool.invokeAll(scans)) {
+            chunks.add(join(future));
+        }
+        
+        // Prefix combine: a chunk starts inside quotes if the chunks before it hold an odd number of quotes
+        long regionStart = from;
+        boolean insideQuotes = chunks.getFirst().oddQuotes();
+        for (int i = 1; i < chunks.size(); i++) {
+            ChunkScan chunk = chunks.get(i);
+            long boundary = insideQuotes ? chunk.firstNewlineInside() : chunk.firstNewlineOutside();
+            if (boundary >= 0) {
+                result.add(new long[]{regionStart, boundary + 1});
+                regionStart = boundary + 1;
+            }
+            insideQuotes ^= chunk.oddQuotes();
+        }
+        if (regionStart < size) {
+            result.add(new long[]{regionStart, size});
+        }
+        return result;
+    }
+    
+    private ChunkScan scan(long start, long end) {
+        boolean insideQuotes = false; // Relative to starting outside quotes
+        long firstOutside = -1;
+        long firstInside = -1;
+        for (long position = start; position < end; ) {
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int offset = (int) (position & SEGMENT_MASK);
+            int limit = (int) Math.min(segment.limit(), offset + (end - position));
+            for (int i = offset; i < limit; i++) {
+                byte b = segment.get(i);
+                if (b == quote) {
+                    insideQuotes = !insideQuotes;
+                } else if (b == '\n' && (insideQuotes ? firstInside : firstOutside) < 0) {
+                    if (insideQuotes) {
+                        firstInside = position + (i - offset);
+                    } else {
+                        firstOutside = position + (i - offset);
+                    }
+                }
+            }
+            position += limit - offset;
+        }
+        return new ChunkScan(insideQuotes, firstOutside, firstInside);
+    }
+    
+    private <E> List<E> parse(long[] region, Function<CsvTokenizer, E> mapper) throws IOException {
+        List<E> rows = new ArrayList<>();
+        try (CsvTokenizer tokens = tokenizer(region[0], region[1])) {
+            while (tokens.next()) {
+                E row = mapper.apply(tokens);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    private CsvTokenizer tokenizer(long from, long to) {
+        return new CsvTokenizer(new RangeInputStream(from, to), separator, quote);
+    }
+    
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while reading CSV file");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * Stops handing out rows. Regions still being parsed are discarded, and the mapped pages are released
+     * once the reader is garbage collected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+    
+    /**
+     * Quote parity of a chunk and its first newline for either starting state, as absolute offsets or -1.
+     */
+    private record ChunkScan(boolean oddQuotes, long firstNewlineOutside, long firstNewlineInside) {
+    }
+    
+    private record ParsedRegion<E>(int index, List<E> rows, Throwable error) {
+    }
+    
+    /**
+     * Reads a byte range of the mapped segments.
+     */
+    private final class RangeInputStream extends InputStream {
+        
+        private long position;
+        private final long end;
+        
+        private RangeInputStream(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+        
+        @Override
+        public int read() {
+            return position < end ? segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position++ & SEGMENT_MASK)) & 0xff : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (position >= end) {
+                return -1;
+            }
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int segmentOffset = (int) (position & SEGMENT_MASK);
+            int count = (int) Math.min(Math.min(length, segment.limit() - segmentOffset), end - position);
+            segment.get(segmentOffset, bytes, offset, count);
+            position += count;
+            return count;
+        }
+    }
+    
+    /**
+     * Hands out parsed regions, keeping at most twice the pool's parallelism of them parsed or in flight.
+     */
+    private final class RegionIterator<E> implements Iterator<E> {
+        
+        private final Function<CsvTokenizer, E> mapper;
+        private final boolean ordered;
+        private final BlockingQueue<ParsedRegion<E>> completed = new LinkedBlockingQueue<>();
+        private final Map<Integer, List<E>> parked = new HashMap<>(); // Ordered mode: regions that finished early
+        private int submitted;
+        private int delivered;
+        private List<E> current = List.of();
+        private int position;
+        
+        private RegionIterator(Function<CsvTokenizer, E> mapper, boolean ordered) {
+            this.mapper = mapper;
+            this.ordered = ordered;
+            int window = Math.max(2, pool.getParallelism() * 2);
+            while (submitted < Math.min(window, regions.size())) {
+                submitNext();
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (position == current.size()) {
+                if (delivered == regions.size() || closed) {
+                    close();
+                    return false;
+                }
+                current = ordered ? takeInOrder() : take().rows();
+                position = 0;
+                delivered++;
+                submitNext();
+            }
+            return true;
+        }
+        
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.get(position++);
+        }
+        
+        private List<E> takeInOrder() {
+            List<E> rows;
+            while ((rows = parked.remove(delivered)) == null) {
+                ParsedRegion<E> region = take();
+                parked.put(region.index(), region.rows());
+            }
+            return rows;
+        }
+        
+        private ParsedRegion<E> take() {
+            ParsedRegion<E> region;
+            try {
+                region = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new CancellationException("Interrupted while reading CSV file");
+            }
+            if (region.error() != null) {
+                close();
+                Throwable error = region.error();
+                throw error instanceof RuntimeException runtime ? runtime : new IllegalStateException(error);
+            }
+            return region;
+        }
+        
+        private void submitNext() {
+            if (submitted == regions.size()) {
+                return;
+            }
+            int index = submitted++;
+            pool.execute(() -> {
+                try {
+                    completed.add(new ParsedRegion<>(index, closed ? List.of() : parse(regions.get(index), mapper), null));
+                } catch (Throwable e) {
+                    completed.add(new ParsedRegion<>(index, null, e));
+                }
+            });
+        }
+    }
+}
@@ -1,85 +1,318 @@
 package top.yanquithor.framework.dddbase.common.infrastructure.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake.SnowFlakeLayout;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake.WorkerIdLease;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake.WorkerIdLeaseStore;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
 @Component
-public class SnowFlake {
+public class SnowFlake implements AutoCloseable {
     
     // Define constants
     private static final long EPOCH = LocalDateTime.of(2025, 1, 1, 0, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
-    private static final int WORKER_ID_BITS = 5; // Worker ID bits
-    private static final int SEQUENCE_BITS = 12; // Sequence number bits
-    private static final long MAX_WORKER_ID = ~(-1L << WORKER_ID_BITS); // Maximum worker ID
-    private static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS); // Maximum sequence number
-    private static final long WORKER_ID_SHIFT = SEQUENCE_BITS; // Worker ID left shift bits
-    private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS; // TimestampTZ left shift bits
+    
+    private final SnowFlakeLayout layout;
+    private final long maxSequence; // Maximum sequence number
+    private final int workerIdShift; // Worker ID left shift bits
+    private final int timestampLeftShift; // TimestampTZ left shift bits
+    private final int timestampShiftInState; // TimestampTZ offset inside the packed state
     
     private final long workerId; // Current worker ID
-    private final AtomicLong sequence = new AtomicLong(0L); // Sequence number
-    private long lastTimestamp = -1L; // Last timestamp when ID was generated
+    private final WorkerIdLease lease; // Lease backing the worker ID, null when configured statically
+    // Packed generator state: (timestamp - EPOCH) << sequence bits | sequence of the last issued ID
+    private final AtomicLong state = new AtomicLong(0L);
+    // How far the logical clock may run ahead of the system clock; 0 keeps the strict mode
+    private final long maxBorrowMillis;
+    private final LongAdder borrowedMillis = new LongAdder(); // Future milliseconds taken ahead of the system clock
+    private final LongAdder exhaustionWaits = new LongAdder(); // Times a caller parked waiting for the clock
     
+    /**
+     * Resolves the worker ID in this order: the {@code SNOWFLAKE_WORKER_ID} environment variable,
+     * an explicit {@code snowflake.worker-id} property, a lease from a {@link WorkerIdLeaseStore} bean,
+     * and finally worker ID 0.
+     */
     @Autowired
     public SnowFlake(Environment environment,
-                     @Value("${snowflake.worker-id:0}") int defaultWorkerId) {
+                     @Value("${snowflake.worker-id:0}") int defaultWorkerId,
+                     @Value("${snowflake.max-borrow-millis:0}") long maxBorrowMillis,
+                     @Value("${snowflake.worker-id-bits:5}") int workerIdBits,
+                     @Value("${snowflake.sequence-bits:12}") int sequenceBits,
+                     @Value("${snowflake.lease-ttl-seconds:30}") long leaseTtlSeconds,
+                     ObjectProvider<WorkerIdLeaseStore> leaseStore) {
+        this.layout = new SnowFlakeLayout(workerIdBits, sequenceBits);
+        this.maxSequence = layout.maxSequence();
+        this.workerIdShift = layout.workerIdShift();
+        this.timestampLeftShift = layout.timestampShift();
+        this.timestampShiftInState = layout.sequenceBits();
+        
         // Prioritize reading worker ID from environment variables
         String workerIdFromEnv = environment.getProperty("SNOWFLAKE_WORKER_ID");
-        this.workerId = (workerIdFromEnv != null) ? Long.parseLong(workerIdFromEnv) : defaultWorkerId;
-        if (this.workerId < 0 || this.workerId > MAX_WORKER_ID) {
+        WorkerIdLeaseStore store = leaseStore.getIfAvailable();
+        if (workerIdFromEnv != null) {
+            this.workerId = checkWorkerId(Long.parseLong(workerIdFromEnv));
+            this.lease = null;
+        } else if (environment.containsProperty("snowflake.worker-id") || store == null) {
+            this.workerId = checkWorkerId(defaultWorkerId);
+            this.lease = null;
+        } else {
+            this.lease = WorkerIdLease.acquire(store, layout.maxWorkerId(), Duration.ofSeconds(leaseTtlSeconds));
+            this.workerId = lease.getWorkerId();
+        }
+        this.maxBorrowMillis = checkMaxBorrowMillis(maxBorrowMillis);
+        log.info("Snowflake Worker Id: {}, layout: {}, max borrow: {}ms", this.workerId, this.layout, this.maxBorrowMillis);
+    }
+    
+    /**
+     * Creates a generator outside the Spring context.
+     *
+     * @param workerId        Worker ID of this node
+     * @param maxBorrowMillis How many milliseconds the logical clock may run ahead of the system clock,
+     *                        0 rejects clock regressions like the default mode
+     */
+    public SnowFlake(long workerId, long maxBorrowMillis) {
+        this(SnowFlakeLayout.DEFAULT, workerId, maxBorrowMillis);
+    }
+    
+    /**
+     * Creates a generator with a custom bit layout outside the Spring context.
+     *
+     * @param layout          Split of timestamp, worker ID and sequence bits
+     * @param workerId        Worker ID of this node
+     * @param maxBorrowMillis How many milliseconds the logical clock may run ahead of the system clock
+     */
+    public SnowFlake(SnowFlakeLayout layout, long workerId, long maxBorrowMillis) {
+        this(layout, workerId, null, maxBorrowMillis);
+    }
+    
+    /**
+     * Creates a generator whose worker ID is leased from {@code leaseStore} and renewed in the background.
+     * While the lease cannot be confirmed, ID generation throws instead of risking duplicates.
+     * The lease is released by {@link #close()}.
+     *
+     * @param layout          Split of timestamp, worker ID and sequence bits
+     * @param leaseStore      Shared lease store
+     * @param leaseTtl        Lease time to live
+     * @param maxBorrowMillis How many milliseconds the logical clock may run ahead of the system clock
+     */
+    public SnowFlake(SnowFlakeLayout layout, WorkerIdLeaseStore leaseStore, Duration leaseTtl, long maxBorrowMillis) {
+        this(layout, -1, WorkerIdLease.acquire(leaseStore, layout.maxWorkerId(), leaseTtl), maxBorrowMillis);
+    }
+    
+    private SnowFlake(SnowFlakeLayout layout, long workerId, WorkerIdLease lease, long maxBorrowMillis) {
+        this.layout = layout;
+        this.maxSequence = layout.maxSequence();
+        this.workerIdShift = layout.workerIdShift();
+        this.timestampLeftShift = layout.timestampShift();
+        this.timestampShiftInState = layout.sequenceBits();
+        this.lease = lease;
+        this.workerId = lease != null ? lease.getWorkerId() : checkWorkerId(workerId);
+        this.maxBorrowMillis = checkMaxBorrowMillis(maxBorrowMillis);
+    }
+    
+    public SnowFlake() {this(1, 0);}
+    
+    private long checkWorkerId(long workerId) {
+        if (workerId < 0 || workerId > layout.maxWorkerId()) {
             throw new IllegalArgumentException(String.format(
-                    "Worker Id can't be greater than %d or less than 0", MAX_WORKER_ID));
+                    "Worker Id can't be greater than %d or less than 0", layout.maxWorkerId()));
         }
-        log.info("Snowflake Worker Id: {}", this.workerId);
+        return workerId;
     }
     
-    public SnowFlake() {this.workerId = 1;}
+    private static long checkMaxBorrowMillis(long maxBorrowMillis) {
+        if (maxBorrowMillis < 0) {
+            throw new IllegalArgumentException("Max borrow millis can't be less than 0");
+        }
+        return maxBorrowMillis;
+    }
     
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        
-        // If current time is less than the last timestamp when ID was generated,
-        // it means the system clock has been set back
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(String.format(
-                    "Clock moved backwards. Refusing to generate id for %d milliseconds",
-                    lastTimestamp - timestamp));
+    /**
+     * Generates the next ID without locking.
+     * The last timestamp and sequence live together in one packed {@link AtomicLong}, so each
+     * caller claims its slot with a single CAS and IDs stay strictly increasing for this worker.
+     *
+     * @return Next unique ID
+     * @throws IllegalStateException If the worker ID is leased and the lease is no longer valid
+     */
+    public long nextId() {
+        checkLease();
+        return toId(reserve(1));
+    }
+    
+    /**
+     * Reserves a block of IDs in as few CAS steps as possible.
+     * Each step claims the rest of the current millisecond's sequence range (up to what is still needed),
+     * and rolls over into the next millisecond once the sequence space (4096 IDs by default) is used up.
+     *
+     * @param count Number of IDs to reserve
+     * @return Strictly increasing IDs, owned exclusively by the caller
+     * @throws IllegalStateException If the worker ID is leased and the lease is no longer valid
+     */
+    public long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count can't be less than 0");
         }
-        
-        // If multiple IDs are generated within the same millisecond,
-        // resolve conflicts through sequence numbers
-        if (lastTimestamp == timestamp) {
-            sequence.getAndIncrement();
-            if (sequence.get() > MAX_SEQUENCE) {
-                timestamp = tilNextMillis(lastTimestamp);
+        checkLease();
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            long first = reserve(count - filled);
+            int taken = claimable(first, count - filled);
+            long firstId = toId(first);
+            for (int i = 0; i < taken; i++) {
+                ids[filled++] = firstId + i; // Sequence occupies the lowest bits
             }
-        } else {
-            sequence.set(0L); // Reset sequence number in new millisecond
         }
-        
-        lastTimestamp = timestamp;
-        
-        return ((timestamp - EPOCH) << TIMESTAMP_LEFT_SHIFT) |
-                (workerId << WORKER_ID_SHIFT) |
-                (sequence.get() & MAX_SEQUENCE);
+        return ids;
+    }
+    
+    /**
+     * Claims up to {@code count} consecutive sequence numbers within a single millisecond.
+     * <p>
+     * In tolerant mode ({@code maxBorrowMillis > 0}) the generator keeps a logical clock: a system clock
+     * that steps back is ignored, and an exhausted sequence moves on to a future millisecond as long as the
+     * logical clock stays within the borrow budget. Callers that would exceed the budget park until the
+     * system clock catches up instead of failing.
+     *
+     * @param count Maximum number of sequence numbers wanted
+     * @return Packed state of the first claimed slot, see {@link #claimable(long, int)} for the claimed size
+     */
+    private long reserve(int count) {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> timestampShiftInState;
+            long timestamp = timeGen() - EPOCH;
+            
+            // If current time is less than the last timestamp when ID was generated,
+            // it means the system clock has been set back
+            if (timestamp < lastTimestamp && maxBorrowMillis == 0) {
+                throw new RuntimeException(String.format(
+                        "Clock moved backwards. Refusing to generate id for %d milliseconds",
+                        lastTimestamp - timestamp));
+            }
+            
+            long first;
+            boolean borrowed = false;
+            if (timestamp <= lastTimestamp) {
+                // Same (logical) millisecond, resolve conflicts through sequence numbers
+                if ((current & maxSequence) == maxSequence) {
+                    long lead = lastTimestamp + 1 - timestamp;
+                    if (lead > maxBorrowMillis) {
+                        awaitMillis(lastTimestamp + 1 - maxBorrowMillis + EPOCH);
+                        continue;
+                    }
+                    first = (lastTimestamp + 1) << timestampShiftInState;
+                    borrowed = true;
+                } else {
+                    first = current + 1;
+                }
+            } else {
+                first = timestamp << timestampShiftInState; // Reset sequence number in new millisecond
+            }
+            
+            if (state.compareAndSet(current, first + claimable(first, count) - 1)) {
+                if (borrowed) {
+                    borrowedMillis.increment();
+                }
+                return first;
+            }
+        }
+    }
+    
+    /**
+     * Refuses to generate IDs under a worker ID that another node may have taken over.
+     */
+    private void checkLease() {
+        if (lease != null && !lease.isValid()) {
+            throw new IllegalStateException(String.format(
+                    "Lease on worker id %d is no longer valid, refusing to generate ids", workerId));
+        }
+    }
+    
+    private int claimable(long first, int count) {
+        return (int) Math.min(maxSequence - (first & maxSequence) + 1, count);
+    }
+    
+    private long toId(long packedState) {
+        return ((packedState >>> timestampShiftInState) << timestampLeftShift) |
+                (workerId << workerIdShift) |
+                (packedState & maxSequence);
     }
     
     private long timeGen() {
         return System.currentTimeMillis();
     }
     
-    private long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    /**
+     * Parks the caller until the system clock reaches the given timestamp.
+     *
+     * @param timestamp Target epoch millisecond
+     */
+    private void awaitMillis(long timestamp) {
+        exhaustionWaits.increment();
+        long remaining;
+        while ((remaining = timestamp - timeGen()) > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+    }
+    
+    /**
+     * @return Total number of future milliseconds the logical clock has borrowed
+     */
+    public long getBorrowedMillis() {
+        return borrowedMillis.sum();
+    }
+    
+    /**
+     * @return Total number of times a caller parked because the sequence or borrow budget was exhausted
+     */
+    public long getExhaustionWaits() {
+        return exhaustionWaits.sum();
+    }
+    
+    /**
+     * @return How many milliseconds the logical clock is currently ahead of the system clock
+     */
+    public long getClockLeadMillis() {
+        return Math.max(0, (state.get() >>> timestampShiftInState) + EPOCH - timeGen());
+    }
+    
+    public SnowFlakeLayout getLayout() {
+        return layout;
+    }
+    
+    public long getWorkerId() {
+        return workerId;
+    }
+    
+    /**
+     * @return False if the worker ID is leased and the lease was lost or could not be renewed in time
+     */
+    public boolean isLeaseValid() {
+        return lease == null || lease.isValid();
+    }
+    
+    /**
+     * Releases the worker ID lease, if any.
+     */
+    @Override
+    public void close() {
+        if (lease != null) {
+            lease.close();
         }
-        return timestamp;
     }
 }
@@ -0,0 +1,40 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-JVM lease store, meant for tests and for several generators living in one process.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public class InMemoryWorkerIdLeaseStore implements WorkerIdLeaseStore {
+    
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    
+    @Override
+    public boolean tryAcquire(long workerId, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.compute(workerId, (id, current) ->
+                current == null || current.expiresAt() <= now ? new Lease(owner, now + ttl.toMillis()) : current);
+        return lease.owner().equals(owner);
+    }
+    
+    @Override
+    public boolean renew(long workerId, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.computeIfPresent(workerId, (id, current) ->
+                current.owner().equals(owner) && current.expiresAt() > now ? new Lease(owner, now + ttl.toMillis()) : current);
+        return lease != null && lease.owner().equals(owner) && lease.expiresAt() > now;
+    }
+    
+    @Override
+    public void release(long workerId, String owner) {
+        leases.computeIfPresent(workerId, (id, current) -> current.owner().equals(owner) ? null : current);
+    }
+    
+    private record Lease(String owner, long expiresAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Redis lease store: one key per worker ID, created with {@code SET NX PX} and renewed or deleted
+ * only by its owner through compare-and-act Lua scripts.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public class RedisWorkerIdLeaseStore implements WorkerIdLeaseStore {
+    
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    
+    public RedisWorkerIdLeaseStore(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, "snowflake:worker:");
+    }
+    
+    public RedisWorkerIdLeaseStore(StringRedisTemplate redisTemplate, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+    
+    @Override
+    public boolean tryAcquire(long workerId, String owner, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(keyPrefix + workerId, owner, ttl));
+    }
+    
+    @Override
+    public boolean renew(long workerId, String owner, Duration ttl) {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(keyPrefix + workerId),
+                owner, String.valueOf(ttl.toMillis()));
+        return renewed != null && renewed == 1L;
+    }
+    
+    @Override
+    public void release(long workerId, String owner) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(keyPrefix + workerId), owner);
+    }
+}
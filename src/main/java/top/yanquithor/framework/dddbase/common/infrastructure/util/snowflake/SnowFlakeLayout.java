@@ -0,0 +1,59 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake;
+
+/**
+ * Bit layout of a SnowFlake ID: {@code 0 | timestamp | worker ID | sequence}.
+ * The timestamp takes whatever is left of the 63 usable bits once worker ID and sequence bits are assigned.
+ *
+ * @param workerIdBits Worker ID bits
+ * @param sequenceBits Sequence number bits
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public record SnowFlakeLayout(int workerIdBits, int sequenceBits) {
+    
+    /**
+     * Classic layout: 41 timestamp bits, 5 worker ID bits (32 nodes) and 12 sequence bits (4096 IDs per ms).
+     */
+    public static final SnowFlakeLayout DEFAULT = new SnowFlakeLayout(5, 12);
+    
+    // At least 41 timestamp bits are kept, which lasts about 69 years from the epoch
+    private static final int MIN_TIMESTAMP_BITS = 41;
+    
+    public SnowFlakeLayout {
+        if (workerIdBits < 0 || sequenceBits < 1 || workerIdBits + sequenceBits > 63 - MIN_TIMESTAMP_BITS) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid snowflake layout: %d worker ID bits and %d sequence bits, at most %d bits in total",
+                    workerIdBits, sequenceBits, 63 - MIN_TIMESTAMP_BITS));
+        }
+    }
+    
+    public int timestampBits() {
+        return 63 - workerIdBits - sequenceBits;
+    }
+    
+    public long maxWorkerId() {
+        return ~(-1L << workerIdBits);
+    }
+    
+    public long maxSequence() {
+        return ~(-1L << sequenceBits);
+    }
+    
+    public int workerIdShift() {
+        return sequenceBits;
+    }
+    
+    public int timestampShift() {
+        return sequenceBits + workerIdBits;
+    }
+    
+    /**
+     * Extracts the worker ID embedded in an ID generated with this layout.
+     *
+     * @param id Generated ID
+     * @return Worker ID that generated it
+     */
+    public long workerIdOf(long id) {
+        return (id >>> workerIdShift()) & maxWorkerId();
+    }
+}
@@ -0,0 +1,110 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A worker ID held through a {@link WorkerIdLeaseStore} and renewed on a background daemon thread.
+ * The ID itself never changes, so generators read it once and the ID hot path never touches the store.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+@Slf4j
+public final class WorkerIdLease implements AutoCloseable {
+    
+    private final WorkerIdLeaseStore store;
+    private final long workerId;
+    private final String owner;
+    private final Duration ttl;
+    private final ScheduledExecutorService renewer;
+    private volatile boolean lost;
+    private volatile long confirmedAt; // nanoTime taken before the last successful acquire or renew
+    
+    private WorkerIdLease(WorkerIdLeaseStore store, long workerId, String owner, Duration ttl, long acquiredAt) {
+        this.store = store;
+        this.workerId = workerId;
+        this.owner = owner;
+        this.ttl = ttl;
+        this.confirmedAt = acquiredAt;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snowflake-lease-renewer-" + workerId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, ttl.toMillis() / 3); // Renew well before expiry
+        renewer.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Leases the first free worker ID, probing from a random offset to spread concurrent starters.
+     *
+     * @param store       Shared lease store
+     * @param maxWorkerId Largest worker ID allowed by the layout
+     * @param ttl         Lease time to live, renewed every third of it
+     * @return Lease on a free worker ID
+     * @throws IllegalStateException If every worker ID is taken
+     */
+    public static WorkerIdLease acquire(WorkerIdLeaseStore store, long maxWorkerId, Duration ttl) {
+        String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        long slots = maxWorkerId + 1;
+        long offset = ThreadLocalRandom.current().nextLong(slots);
+        for (long i = 0; i < slots; i++) {
+            long workerId = (offset + i) % slots;
+            long attemptedAt = System.nanoTime();
+            if (store.tryAcquire(workerId, owner, ttl)) {
+                log.info("Leased snowflake worker id {} as {}", workerId, owner);
+                return new WorkerIdLease(store, workerId, owner, ttl, attemptedAt);
+            }
+        }
+        throw new IllegalStateException(String.format("All %d snowflake worker ids are leased", slots));
+    }
+    
+    private void renew() {
+        if (lost) {
+            return;
+        }
+        long attemptedAt = System.nanoTime();
+        try {
+            if (store.renew(workerId, owner, ttl)) {
+                confirmedAt = attemptedAt;
+            } else {
+                lost = true;
+                log.error("Lost lease on snowflake worker id {}, id generation is stopped", workerId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew lease on snowflake worker id {}, it expires in {} ms unless renewed",
+                    workerId, Math.max(0, TimeUnit.NANOSECONDS.toMillis(ttl.toNanos() - (attemptedAt - confirmedAt))), e);
+        }
+    }
+    
+    public long getWorkerId() {
+        return workerId;
+    }
+    
+    /**
+     * @return False once a renewal found the lease taken over, or when the lease has not been confirmed
+     * within its time to live, e.g. because the store is unreachable, so another node may already hold it
+     */
+    public boolean isValid() {
+        return !lost && System.nanoTime() - confirmedAt < ttl.toNanos();
+    }
+    
+    @Override
+    public void close() {
+        renewer.shutdownNow();
+        try {
+            store.release(workerId, owner);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release lease on snowflake worker id {}", workerId, e);
+        }
+        lost = true;
+    }
+}
@@ -0,0 +1,41 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util.snowflake;
+
+import java.time.Duration;
+
+/**
+ * Shared store that hands out exclusive, expiring leases on SnowFlake worker IDs.
+ * Implementations must make {@link #tryAcquire} atomic across all nodes that share the store.
+ *
+ * @author YanQuithor
+ * @since 2026-10-17
+ */
+public interface WorkerIdLeaseStore {
+    
+    /**
+     * Takes the lease on a worker ID if nobody else currently holds it.
+     *
+     * @param workerId Worker ID to lease
+     * @param owner    Unique identity of the leasing node
+     * @param ttl      How long the lease lives without renewal
+     * @return True if the lease now belongs to {@code owner}
+     */
+    boolean tryAcquire(long workerId, String owner, Duration ttl);
+    
+    /**
+     * Extends a lease that is still held by {@code owner}.
+     *
+     * @param workerId Leased worker ID
+     * @param owner    Identity used when acquiring
+     * @param ttl      New time to live
+     * @return False if the lease expired or now belongs to someone else
+     */
+    boolean renew(long workerId, String owner, Duration ttl);
+    
+    /**
+     * Gives the worker ID back, if it is still held by {@code owner}.
+     *
+     * @param workerId Leased worker ID
+     * @param owner    Identity used when acquiring
+     */
+    void release(long workerId, String owner);
+}
@@ -0,0 +1,90 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemDO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting a page of aggregates to data objects with the {@link GeneratedConverter},
+ * with reflective property copying ({@link BeanUtils#copyProperties}) and with hand-written accessor calls.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=top.yanquithor.framework.dddbase.common.infrastructure.converter.ConverterBenchmark}
+ * or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+    
+    @Param({"1000"})
+    private int size;
+    
+    private List<Item> items;
+    private GeneratedConverter<ItemDO, Item> generated;
+    
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            items.add(new Item(i, "item" + i));
+        }
+        generated = GeneratedConverter.of(ItemDO.class, Item.class);
+    }
+    
+    @Benchmark
+    public List<ItemDO> generated() {
+        return generated.toDOs(items);
+    }
+    
+    @Benchmark
+    public List<ItemDO> reflection() {
+        List<ItemDO> dos = new ArrayList<>(items.size());
+        for (Item item : items) {
+            ItemDO aDo = new ItemDO();
+            BeanUtils.copyProperties(item, aDo);
+            dos.add(aDo);
+        }
+        return dos;
+    }
+    
+    @Benchmark
+    public List<ItemDO> handWritten() {
+        List<ItemDO> dos = new ArrayList<>(items.size());
+        for (Item item : items) {
+            ItemDO aDo = new ItemDO();
+            aDo.setId(item.getId());
+            aDo.setStatus(item.getStatus());
+            aDo.setName(item.getName());
+            aDo.setQty(item.getQty());
+            aDo.setVersion(item.getVersion());
+            dos.add(aDo);
+        }
+        return dos;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConverterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
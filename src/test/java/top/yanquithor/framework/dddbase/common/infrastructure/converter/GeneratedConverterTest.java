@@ -0,0 +1,57 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.converter;
+
+import org.junit.jupiter.api.Test;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemDO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeneratedConverterTest {
+    
+    private final GeneratedConverter<ItemDO, Item> converter = GeneratedConverter.of(ItemDO.class, Item.class);
+    
+    @Test
+    void aggregatesAndDataObjectsRoundTrip() {
+        Item item = new Item(42, "answer");
+        item.setQty(5);
+        
+        ItemDO aDo = converter.toDO(item);
+        assertThat(aDo.getId()).isEqualTo(42);
+        assertThat(aDo.getName()).isEqualTo("answer");
+        assertThat(aDo.getQty()).isEqualTo(5);
+        assertThat(aDo.getStatus()).isEqualTo("active");
+        assertThat(aDo.getVersion()).isZero();
+        
+        aDo.setCreateTime(LocalDateTime.now());
+        Item back = converter.toDomain(aDo);
+        assertThat(back).usingRecursiveComparison().isEqualTo(item);
+    }
+    
+    @Test
+    void nullConvertsToNull() {
+        assertThat(converter.toDO(null)).isNull();
+        assertThat(converter.toDomain(null)).isNull();
+    }
+    
+    @Test
+    void collectionsConvertInIterationOrder() {
+        Set<Item> items = new LinkedHashSet<>();
+        for (long id = 10; id > 0; id--) {
+            items.add(new Item(id, "item" + id));
+        }
+        
+        List<ItemDO> dos = converter.toDOs(items);
+        List<Item> domains = converter.toDomains(dos);
+        
+        assertThat(dos).extracting(ItemDO::getId).containsExactly(10L, 9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L);
+        assertThat(domains).extracting(Item::getName).containsExactlyElementsOf(
+                items.stream().map(Item::getName).toList());
+        assertThat(converter.toDOs(new ArrayList<>())).isEmpty();
+    }
+}
@@ -0,0 +1,182 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.converter;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PropertyMappingTest {
+    
+    @Test
+    void beansAreCopiedThroughGeneratedAccessors() throws ReflectiveOperationException {
+        PropertyMapping<Source, Target> mapping = PropertyMapping.of(Source.class, Target.class);
+        Source source = new Source();
+        source.setName("name");
+        source.setQty(3);
+        source.setActive(true);
+        
+        Target target = mapping.copy(source);
+        
+        assertThat(target.getName()).isEqualTo("name");
+        assertThat(target.getQty()).isEqualTo(3);
+        assertThat(target.isActive()).isTrue();
+        for (Object getter : accessors(mapping, "setterSources")) {
+            assertThat(getter.getClass().getName()).startsWith(Source.class.getName() + "$$Lambda");
+        }
+        for (Object setter : accessors(mapping, "setters")) {
+            assertThat(setter.getClass().getName()).startsWith(Target.class.getName() + "$$Lambda");
+        }
+    }
+    
+    @Test
+    void nullsAreNotWrittenToPrimitiveProperties() {
+        Target target = PropertyMapping.of(Source.class, Target.class).copy(new Source());
+        
+        assertThat(target.getQty()).isZero();
+        assertThat(target.getName()).isNull();
+    }
+    
+    @Test
+    void classesThatCannotBeLookedIntoFallBackToReflection() throws ReflectiveOperationException {
+        // java.time and java.util are not opened to this module, so no accessor can be spun for them
+        PropertyMapping<LocalDate, DateParts> fromJdk = PropertyMapping.of(LocalDate.class, DateParts.class);
+        DateParts parts = fromJdk.copy(LocalDate.of(2025, 3, 14));
+        assertThat(parts.getYear()).isEqualTo(2025);
+        assertThat(parts.getMonthValue()).isEqualTo(3);
+        assertThat(parts.getDayOfMonth()).isEqualTo(14);
+        for (Object getter : accessors(fromJdk, "setterSources")) {
+            assertThat(getter.getClass().getName()).startsWith(PropertyMapping.class.getName() + "$$Lambda");
+        }
+        
+        Timestamped timestamped = new Timestamped();
+        timestamped.setTime(1_700_000_000_000L);
+        Date date = PropertyMapping.of(Timestamped.class, Date.class).copy(timestamped);
+        assertThat(date.getTime()).isEqualTo(1_700_000_000_000L);
+    }
+    
+    @Test
+    void recordsAreReadAndBuiltThroughTheirCanonicalConstructor() {
+        Target target = PropertyMapping.of(SourceRecord.class, Target.class).copy(new SourceRecord("name", 3));
+        assertThat(target.getName()).isEqualTo("name");
+        assertThat(target.getQty()).isEqualTo(3);
+        
+        Source source = new Source();
+        source.setName("name");
+        TargetRecord record = PropertyMapping.of(Source.class, TargetRecord.class).copy(source);
+        assertThat(record).isEqualTo(new TargetRecord("name", 0, null));
+    }
+    
+    @Test
+    void theSetterTakingTheExactPropertyTypeWins() {
+        Source source = new Source();
+        source.setQty(7);
+        
+        Overloaded target = PropertyMapping.of(Source.class, Overloaded.class).copy(source);
+        
+        assertThat(target.calls).containsExactly("Integer:7");
+    }
+    
+    @Test
+    void fluentSettersAreUsed() {
+        Source source = new Source();
+        source.setName("name");
+        
+        assertThat(PropertyMapping.of(Source.class, Fluent.class).copy(source).name).isEqualTo("name");
+    }
+    
+    @Test
+    void targetsWithoutANoArgConstructorAreRejected() {
+        assertThatThrownBy(() -> PropertyMapping.of(Source.class, NoDefaultConstructor.class))
+                .isInstanceOf(IllegalStateException.class);
+    }
+    
+    @Test
+    void nullSourcesCopyToNull() {
+        assertThat(PropertyMapping.of(Source.class, Target.class).copy(null)).isNull();
+    }
+    
+    private static Object[] accessors(PropertyMapping<?, ?> mapping, String field) throws ReflectiveOperationException {
+        Field accessors = PropertyMapping.class.getDeclaredField(field);
+        accessors.setAccessible(true);
+        Object[] functions = (Object[]) accessors.get(mapping);
+        assertThat(functions).isNotEmpty();
+        return functions;
+    }
+    
+    @Getter
+    @Setter
+    public static class Source {
+        private String name;
+        private Integer qty;
+        private boolean active;
+    }
+    
+    @Getter
+    @Setter
+    public static class Target {
+        private String name;
+        private int qty;
+        private boolean active;
+    }
+    
+    @Getter
+    @Setter
+    public static class DateParts {
+        private int year;
+        private int monthValue;
+        private int dayOfMonth;
+    }
+    
+    @Getter
+    @Setter
+    public static class Timestamped {
+        private long time;
+    }
+    
+    public record SourceRecord(String name, Integer qty) {
+    }
+    
+    public record TargetRecord(String name, int qty, Boolean missing) {
+    }
+    
+    public static class Overloaded {
+        private final List<String> calls = new ArrayList<>();
+        
+        public void setQty(Object qty) {
+            calls.add("Object:" + qty);
+        }
+        
+        public void setQty(Integer qty) {
+            calls.add("Integer:" + qty);
+        }
+        
+        public void setQty(Number qty) {
+            calls.add("Number:" + qty);
+        }
+    }
+    
+    public static class Fluent {
+        private String name;
+        
+        public Fluent setName(String name) {
+            this.name = name;
+            return this;
+        }
+    }
+    
+    public static class NoDefaultConstructor {
+        public NoDefaultConstructor(String name) {
+        }
+        
+        public void setName(String name) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalAggregateCacheTest {
+    
+    private final LocalAggregateCache<Item> cache = LocalAggregateCache.<Item>builder().build();
+    
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void putsLoadedBeforeAnInvalidationAreRejected() {
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        
+        assertThat(cache.putIfNotInvalidatedSince(1, new Item(1, "stale"), stamp)).isFalse();
+        assertThat(cache.putIfNotInvalidatedSince(1, new Item(1, "fresh"), cache.stamp())).isTrue();
+    }
+    
+    @Test
+    void invalidationIsRepeatedWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1);
+        // The transaction reads its own uncommitted write back into the cache
+        cache.put(1, new Item(1, "uncommitted"));
+        
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertThat(cache.getAllPresent(List.of(1L))).isEmpty();
+    }
+    
+    @Test
+    void invalidationIsRepeatedWhenTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1);
+        cache.put(1, new Item(1, "read inside"));
+        
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        
+        assertThat(cache.getAllPresent(List.of(1L))).isEmpty();
+    }
+    
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+}
@@ -0,0 +1,170 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.InMemoryRedis;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two cache nodes sharing one {@link InMemoryRedis}, each with its own near cache.
+ */
+class RedisAggregateCacheTest {
+    
+    private static final String KEY = "ddd:aggregate:item:1";
+    
+    private final InMemoryRedis redis = new InMemoryRedis();
+    private RedisAggregateCache<Item> nodeA;
+    private RedisAggregateCache<Item> nodeB;
+    
+    @BeforeEach
+    void setUp() {
+        nodeA = node();
+        nodeB = node();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void aggregatesRoundTripThroughJsonb() {
+        Item item = new Item(1, "naïve ✓");
+        item.setQty(7);
+        item.setVersion(3L);
+        nodeA.put(1, item);
+        
+        Item read = nodeB.get(1, id -> {
+            throw new AssertionError("loaded from the database");
+        });
+        
+        assertThat(read).isNotSameAs(item);
+        assertThat(read).usingRecursiveComparison().isEqualTo(item);
+        assertThat(nodeB.getRedisHits()).isEqualTo(1);
+    }
+    
+    @Test
+    void invalidationsAreBroadcastToTheOtherNearCaches() {
+        AtomicInteger loads = new AtomicInteger();
+        nodeA.get(1, id -> load(id, loads));
+        nodeB.get(1, id -> load(id, loads));
+        assertThat(loads).hasValue(1);
+        
+        nodeA.invalidate(1);
+        redis.awaitDelivery();
+        
+        assertThat(redis.keys()).doesNotContain(KEY);
+        assertThat(nodeB.getAllPresent(List.of(1L))).isEmpty();
+        nodeB.get(1, id -> load(id, loads));
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void concurrentMissesOnSeveralNodesLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Item>> reads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                RedisAggregateCache<Item> node = i % 2 == 0 ? nodeA : nodeB;
+                reads.add(CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    return node.get(1, id -> {
+                        sleep(200);
+                        return load(id, loads);
+                    });
+                }, executor));
+            }
+            start.countDown();
+            for (CompletableFuture<Item> read : reads) {
+                assertThat(read.get().getName()).isEqualTo("item1");
+            }
+        }
+        
+        assertThat(loads).hasValue(1);
+        assertThat(nodeA.getLockWaits() + nodeB.getLockWaits()).isEqualTo(1);
+        assertThat(redis.keys()).containsExactly(KEY);
+    }
+    
+    @Test
+    void aLoadOverlappingAnInvalidationIsNotWrittenToRedis() {
+        Item loaded = nodeA.get(1, id -> {
+            Item old = new Item(id, "old");
+            // A concurrent update on another node commits while the old row is in flight
+            long before = nodeA.stamp();
+            nodeB.invalidate(id);
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (nodeA.stamp() == before && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return old;
+        });
+        redis.awaitDelivery();
+        
+        assertThat(loaded.getName()).isEqualTo("old");
+        assertThat(redis.keys()).doesNotContain(KEY);
+    }
+    
+    @Test
+    void invalidationIsRepeatedWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        nodeA.invalidate(1);
+        // The transaction reads its own uncommitted write, which reaches Redis
+        nodeA.get(1, id -> new Item(id, "uncommitted"));
+        assertThat(redis.keys()).contains(KEY);
+        
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertThat(redis.keys()).doesNotContain(KEY);
+        assertThat(nodeA.getAllPresent(List.of(1L))).isEmpty();
+    }
+    
+    private RedisAggregateCache<Item> node() {
+        return new RedisAggregateCache<>("item", Item.class, LocalAggregateCache.<Item>builder().build(),
+                redis.connectionFactory(), redis.listenerContainer(), Duration.ofMinutes(5), Duration.ofSeconds(5));
+    }
+    
+    private static Item load(long id, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new Item(id, "item" + id);
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dialect.SqlDialect;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommonRepositoryDeleteTest {
+    
+    private DataSource dataSource;
+    private H2Database database;
+    private ItemRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        dataSource = H2Database.create("delete");
+        database = H2Database.over(dataSource);
+        repository = database.repository();
+    }
+    
+    @Test
+    void deleteMarksOnlyTheTargetedRow() {
+        repository.saveAll(items(1, 10));
+        
+        repository.delete(new Item(3, "three"));
+        
+        assertThat(deletedIds()).containsExactly(3L);
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE status = 'active'")).isEqualTo(9);
+    }
+    
+    @Test
+    void deleteByIdsMarksOnlyTheGivenRows() {
+        repository.saveAll(items(1, 10));
+        
+        long deleted = repository.deleteByIds(List.of(2L, 4L, 4L, 99L));
+        
+        assertThat(deleted).isEqualTo(2);
+        assertThat(deletedIds()).containsExactly(2L, 4L);
+    }
+    
+    @Test
+    void deleteByIdsChunksLargeBatchesToTheDialectLimit() {
+        int rows = 12_000;
+        repository.saveAll(items(1, rows));
+        List<Long> ids = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            ids.add(id);
+        }
+        int chunkSize = SqlDialect.H2.maxInListSize() - 1;
+        int before = database.statements();
+        
+        long deleted = repository.deleteByIds(ids);
+        
+        assertThat(deleted).isEqualTo(rows);
+        assertThat(database.statements() - before).isEqualTo((rows + chunkSize - 1) / chunkSize);
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE status = 'deleted'")).isEqualTo(rows);
+    }
+    
+    @Test
+    void deleteByIdsWithoutIdsRunsNoStatement() {
+        int before = database.statements();
+        
+        assertThat(repository.deleteByIds(List.of())).isZero();
+        assertThat(database.statements()).isEqualTo(before);
+    }
+    
+    private List<Long> deletedIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Item item : repository.getByIds(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L))) {
+            if (item != null && "deleted".equals(item.getStatus())) {
+                ids.add(item.getId());
+            }
+        }
+        return ids;
+    }
+    
+    private static List<Item> items(long from, long to) {
+        List<Item> items = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            items.add(new Item(id, "item" + id));
+        }
+        return items;
+    }
+}
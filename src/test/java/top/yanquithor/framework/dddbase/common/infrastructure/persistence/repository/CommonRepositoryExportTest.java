@@ -0,0 +1,62 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.CsvWriteStats;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommonRepositoryExportTest {
+    
+    @TempDir
+    Path directory;
+    
+    private DataSource dataSource;
+    private ItemRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        dataSource = H2Database.create("export");
+        repository = H2Database.over(dataSource).repository();
+        List<Item> items = new ArrayList<>();
+        for (long id = 1; id <= 25; id++) {
+            items.add(new Item(id, "item" + id));
+        }
+        repository.saveAll(items);
+    }
+    
+    @Test
+    void exportStreamsEveryRowInsideATransaction() throws IOException {
+        File output = directory.resolve("items.csv").toFile();
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        
+        CsvWriteStats stats = transaction.execute(status -> repository.exportCsv(null, Item.class, output));
+        
+        assertThat(stats.rows()).isEqualTo(25);
+        assertThat(Files.readAllLines(output.toPath())).hasSize(26);
+    }
+    
+    @Test
+    void exportOutsideATransactionIsRejected() {
+        File output = directory.resolve("items.csv").toFile();
+        
+        assertThatThrownBy(() -> repository.exportCsv(null, Item.class, output))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(output).doesNotExist();
+    }
+}
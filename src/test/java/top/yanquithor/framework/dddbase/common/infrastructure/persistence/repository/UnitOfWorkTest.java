@@ -0,0 +1,60 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UnitOfWorkTest {
+    
+    private DataSource dataSource;
+    private ItemRepository repository;
+    private UnitOfWork unitOfWork;
+    
+    @BeforeEach
+    void setUp() {
+        dataSource = H2Database.create("unit-of-work");
+        repository = H2Database.over(dataSource).repository();
+        unitOfWork = new UnitOfWork(new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+    
+    @Test
+    void registeredChangesAreWrittenOnCommit() {
+        repository.save(new Item(1, "one"));
+        Item changed = repository.getById(1);
+        changed.setName("changed");
+        
+        unitOfWork.registerNew(repository, new Item(2, "two"));
+        unitOfWork.registerDirty(repository, changed);
+        unitOfWork.commit();
+        
+        assertThat(repository.getById(1).getName()).isEqualTo("changed");
+        assertThat(repository.getById(2).getName()).isEqualTo("two");
+    }
+    
+    @Test
+    void registeringTheSameIdAsNewTwiceIsRejected() {
+        unitOfWork.registerNew(repository, new Item(1, "first"));
+        
+        assertThatThrownBy(() -> unitOfWork.registerNew(repository, new Item(1, "second")))
+                .isInstanceOf(IllegalStateException.class);
+        unitOfWork.commit();
+        assertThat(repository.getById(1).getName()).isEqualTo("first");
+    }
+    
+    @Test
+    void aggregatesWithoutAnIdCannotBeRegisteredAsNew() {
+        assertThatThrownBy(() -> unitOfWork.registerNew(repository, new Item(0, "new")))
+                .isInstanceOf(IllegalArgumentException.class);
+        unitOfWork.commit();
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item")).isZero();
+    }
+}
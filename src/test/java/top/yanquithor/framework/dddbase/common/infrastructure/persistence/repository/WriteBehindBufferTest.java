@@ -0,0 +1,91 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl.DomainServiceImpl;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindBufferTest {
+    
+    private DataSource dataSource;
+    private ItemRepository repository;
+    private WriteBehindBuffer<Item> buffer;
+    
+    @BeforeEach
+    void setUp() {
+        dataSource = H2Database.create("write-behind");
+        repository = H2Database.over(dataSource).repository();
+        List<Item> items = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            items.add(new Item(id, "item" + id));
+        }
+        repository.saveAll(items);
+        // Flushed by hand only
+        buffer = WriteBehindBuffer.start(repository, 100, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+    
+    @Test
+    void aFailingRowIsIsolatedAndDroppedAfterItsAttempts() {
+        for (long id = 1; id <= 8; id++) {
+            // Too long for the name column
+            buffer.update(new Item(id, id == 5 ? "x".repeat(60) : "renamed" + id));
+        }
+        
+        assertThatThrownBy(buffer::flush).isInstanceOf(RuntimeException.class);
+        
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE name LIKE 'renamed%'")).isEqualTo(7);
+        assertThat(buffer.pendingCount()).isEqualTo(1);
+        assertThat(buffer.getDroppedUpdates()).isZero();
+        
+        assertThatThrownBy(buffer::flush).isInstanceOf(RuntimeException.class);
+        
+        assertThat(buffer.pendingCount()).isZero();
+        assertThat(buffer.getDroppedUpdates()).isEqualTo(1);
+        assertThat(buffer.getFlushedRows()).isEqualTo(7);
+        buffer.flush();
+    }
+    
+    @Test
+    void aNewerUpdateOfAFailingRowStartsOver() {
+        buffer.update(new Item(5, "x".repeat(60)));
+        assertThatThrownBy(buffer::flush).isInstanceOf(RuntimeException.class);
+        
+        buffer.update(new Item(5, "fixed"));
+        buffer.flush();
+        
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE id = 5 AND name = 'fixed'")).isEqualTo(1);
+        assertThat(buffer.getDroppedUpdates()).isZero();
+    }
+    
+    @Test
+    void serviceUpdateAllIsNotOverwrittenByAnOlderBufferedUpdate() {
+        DomainServiceImpl<Item> service = new DomainServiceImpl<>(repository);
+        service.setWriteBehind(buffer);
+        
+        service.update(new Item(1, "older"));
+        service.updateAll(List.of(new Item(1, "newer"), new Item(2, "newer")));
+        buffer.flush();
+        
+        assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE name = 'newer'")).isEqualTo(2);
+        assertThat(buffer.getCoalesced()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,128 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl.AsyncDomainServiceImpl;
+import top.yanquithor.framework.dddbase.common.infrastructure.domain.service.impl.DomainServiceImpl;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two H2 databases stand in for the primary and a replica. Row 1 exists in both under the name of its database,
+ * so every read tells where it was served from.
+ */
+class ReadWriteRoutingDataSourceTest {
+    
+    private static final Duration STICKINESS = Duration.ofMillis(200);
+    
+    private DataSource primary;
+    private DataSource replica;
+    private DataSource routing;
+    private H2Database database;
+    private ItemRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        primary = H2Database.create("primary");
+        replica = H2Database.create("replica");
+        H2Database.execute(primary, "INSERT INTO item (id, name, status, version) VALUES (1, 'primary', 'active', 0)");
+        H2Database.execute(replica, "INSERT INTO item (id, name, status, version) VALUES (1, 'replica', 'active', 0)");
+        routing = new LazyConnectionDataSourceProxy(ReadWriteRoutingDataSource.of(primary, Map.of("replica", replica),
+                ReplicaSelector.roundRobin(), STICKINESS));
+        database = H2Database.over(routing);
+        repository = database.repository();
+    }
+    
+    @AfterEach
+    void waitForStickinessToExpire() throws InterruptedException {
+        // Writes stick the test thread to the primary, which must not carry over into the next test
+        Thread.sleep(STICKINESS.toMillis());
+    }
+    
+    @Test
+    void readsGoToTheReplicaAndWritesToThePrimary() {
+        assertThat(repository.getById(1).getName()).isEqualTo("replica");
+        
+        repository.save(new Item(2, "written"));
+        
+        assertThat(H2Database.queryLong(primary, "SELECT COUNT(*) FROM item WHERE id = 2")).isEqualTo(1);
+        assertThat(H2Database.queryLong(replica, "SELECT COUNT(*) FROM item WHERE id = 2")).isZero();
+    }
+    
+    @Test
+    void readsStayOnThePrimaryForTheStickinessWindowAfterAWrite() throws InterruptedException {
+        repository.save(new Item(2, "written"));
+        
+        assertThat(repository.getById(1).getName()).isEqualTo("primary");
+        assertThat(repository.getById(2)).isNotNull();
+        
+        Thread.sleep(STICKINESS.toMillis() + 100);
+        assertThat(repository.getById(1).getName()).isEqualTo("replica");
+    }
+    
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndOthersToThePrimary() {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        
+        transaction.setReadOnly(true);
+        assertThat(transaction.<String>execute(status -> database.mapper().selectById(1L).getName())).isEqualTo("replica");
+        
+        transaction.setReadOnly(false);
+        assertThat(transaction.<String>execute(status -> repository.getById(1).getName())).isEqualTo("primary");
+    }
+    
+    @Test
+    void theStickinessWindowStartsWhenTheWritingTransactionCompletes() {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        
+        transaction.executeWithoutResult(status -> {
+            repository.save(new Item(2, "written"));
+            try {
+                // Longer than the window: stamped only at the statement, it would expire before the commit
+                Thread.sleep(STICKINESS.toMillis() + 100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        assertThat(repository.getById(1).getName()).isEqualTo("primary");
+        assertThat(repository.getById(2)).isNotNull();
+    }
+    
+    @Test
+    void asyncReadsKeepTheCallersStickiness() {
+        try (AsyncDomainServiceImpl<Item> async = new AsyncDomainServiceImpl<>(new DomainServiceImpl<>(repository), 2)) {
+            assertThat(async.getById(1).join().getName()).isEqualTo("replica");
+            
+            repository.save(new Item(2, "written"));
+            
+            assertThat(async.getById(1).join().getName()).isEqualTo("primary");
+        }
+    }
+    
+    @Test
+    void coalescedReadsStayOnThePrimaryIfAnyCallerWroteRecently() throws InterruptedException {
+        // The second distinct id closes the batch, long before the window ends
+        repository.enableCoalescing(Duration.ofSeconds(5), 2);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> repository.getById(1).getName());
+        Thread.sleep(100);
+        
+        repository.save(new Item(2, "written"));
+        
+        assertThat(repository.getById(2)).isNotNull();
+        assertThat(leader.join()).isEqualTo("primary");
+        assertThat(repository.coalescingStats().batches()).isEqualTo(1);
+    }
+}
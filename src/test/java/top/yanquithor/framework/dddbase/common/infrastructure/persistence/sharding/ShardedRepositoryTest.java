@@ -0,0 +1,143 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.sharding;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.H2Database;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.Item;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.support.ItemRepository;
+import top.yanquithor.framework.dddbase.common.infrastructure.util.SnowFlake;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedRepositoryTest {
+    
+    private static final int SHARDS = 3;
+    private static final ShardingStrategy STRATEGY = ShardingStrategy.hash();
+    
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private ShardedRepository<Item> repository;
+    
+    @BeforeEach
+    void setUp() {
+        List<ItemRepository> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            DataSource dataSource = H2Database.create("shard" + i);
+            dataSources.add(dataSource);
+            shards.add(H2Database.over(dataSource).repository());
+        }
+        repository = new ShardedRepository<>(shards, STRATEGY, 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+    
+    @Test
+    void saveAllStoresEachItemOnItsShardOnlyAndKeepsInputOrder() {
+        List<Item> items = items(1, 30);
+        Collections.shuffle(items, new Random(7));
+        
+        List<Item> saved = repository.saveAll(items);
+        
+        assertThat(saved).extracting(Item::getId).containsExactlyElementsOf(items.stream().map(Item::getId).toList());
+        for (Item item : items) {
+            for (int shard = 0; shard < SHARDS; shard++) {
+                long expected = shard == STRATEGY.shardOf(item.getId(), SHARDS) ? 1 : 0;
+                assertThat(H2Database.queryLong(dataSources.get(shard), "SELECT COUNT(*) FROM item WHERE id = " + item.getId()))
+                        .isEqualTo(expected);
+            }
+        }
+    }
+    
+    @Test
+    void countSumsAllShards() {
+        repository.saveAll(items(1, 30));
+        
+        assertThat(repository.count(null)).isEqualTo(30);
+        for (DataSource dataSource : dataSources) {
+            assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item")).isLessThan(30);
+        }
+    }
+    
+    @Test
+    void getByIdsFollowsTheRequestedOrder() {
+        repository.saveAll(items(1, 30));
+        
+        List<Item> found = repository.getByIds(Arrays.asList(17L, 3L, 99L, null, 3L, 25L));
+        
+        assertThat(found).extracting(item -> item == null ? null : item.getId())
+                .containsExactly(17L, 3L, null, null, 3L, 25L);
+    }
+    
+    @Test
+    void scanMergesTheShardsInIdOrder() {
+        List<Item> items = items(1, 50);
+        Collections.shuffle(items, new Random(11));
+        repository.saveAll(items);
+        
+        try (Stream<Item> scan = repository.scan(null, 4)) {
+            assertThat(scan.map(Item::getId).toList()).isSorted().hasSize(50).doesNotHaveDuplicates();
+        }
+    }
+    
+    @Test
+    void deleteByIdsReachesEveryShard() {
+        repository.saveAll(items(1, 30));
+        
+        long deleted = repository.deleteByIds(List.of(1L, 2L, 3L, 4L, 5L, 6L, 99L));
+        
+        assertThat(deleted).isEqualTo(6);
+        long active = 0;
+        for (DataSource dataSource : dataSources) {
+            active += H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item WHERE status = 'active'");
+        }
+        assertThat(active).isEqualTo(24);
+    }
+    
+    @Test
+    void aggregatesWithoutAnIdAreRejected() {
+        assertThatThrownBy(() -> repository.save(new Item(0, "new"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.saveAll(List.of(new Item(1, "one"), new Item(0, "new"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        
+        for (DataSource dataSource : dataSources) {
+            assertThat(H2Database.queryLong(dataSource, "SELECT COUNT(*) FROM item")).isZero();
+        }
+    }
+    
+    @Test
+    void savedIdsAreFoundOnTheirShard() {
+        try (SnowFlake snowFlake = new SnowFlake(3, 0)) {
+            List<Item> items = new ArrayList<>();
+            for (long id : snowFlake.nextIds(20)) {
+                items.add(new Item(id, "item" + id));
+            }
+            repository.saveAll(items);
+            repository.save(new Item(snowFlake.nextId(), "single"));
+            
+            for (Item item : items) {
+                assertThat(repository.getById(item.getId())).isNotNull();
+            }
+            assertThat(repository.count(null)).isEqualTo(21);
+        }
+    }
+    
+    private static List<Item> items(long first, long last) {
+        List<Item> items = new ArrayList<>();
+        for (long id = first; id <= last; id++) {
+            items.add(new Item(id, "item" + id));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,119 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.h2.jdbcx.JdbcDataSource;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.injector.BaseMapperXSqlInjector;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory H2 databases with the {@code item} table, and MyBatis-Plus mappers over them that take part in
+ * Spring transactions, check versions on full updates like an application with the optimistic locker does,
+ * and count the statements they prepare.
+ */
+public final class H2Database {
+    
+    private static final AtomicInteger NAMES = new AtomicInteger();
+    
+    private final AtomicInteger statements = new AtomicInteger();
+    private final ItemMapper mapper;
+    
+    private H2Database(DataSource dataSource) {
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        GlobalConfigUtils.getGlobalConfig(configuration).setSqlInjector(new BaseMapperXSqlInjector(100));
+        MybatisPlusInterceptor optimisticLocker = new MybatisPlusInterceptor();
+        optimisticLocker.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
+        configuration.addInterceptor(optimisticLocker);
+        configuration.addInterceptor(new StatementCounter(statements));
+        configuration.addMapper(ItemMapper.class);
+        this.mapper = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration))
+                .getMapper(ItemMapper.class);
+    }
+    
+    /**
+     * @param name Prefix of the database name, made unique per call
+     * @return New database with an empty {@code item} table
+     */
+    public static DataSource create(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + NAMES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        execute(dataSource, "CREATE TABLE item (id BIGINT PRIMARY KEY, create_time TIMESTAMP, update_time TIMESTAMP,"
+                + " status VARCHAR(20), name VARCHAR(50), qty INT, version BIGINT)");
+        return dataSource;
+    }
+    
+    /**
+     * @param dataSource Data source whose connections reach an {@code item} table
+     * @return Mapper setup over the data source
+     */
+    public static H2Database over(DataSource dataSource) {
+        return new H2Database(dataSource);
+    }
+    
+    public ItemMapper mapper() {
+        return mapper;
+    }
+    
+    public ItemRepository repository() {
+        return new ItemRepository(mapper);
+    }
+    
+    /**
+     * @return Statements prepared through the mapper so far
+     */
+    public int statements() {
+        return statements.get();
+    }
+    
+    public static void execute(DataSource dataSource, String sql) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+    
+    public static long queryLong(DataSource dataSource, String sql) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+    
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    private static final class StatementCounter implements Interceptor {
+        
+        private final AtomicInteger statements;
+        
+        private StatementCounter(AtomicInteger statements) {
+            this.statements = statements;
+        }
+        
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            statements.incrementAndGet();
+            return invocation.proceed();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process Redis stand-in with just the commands the aggregate cache uses: plain values with
+ * {@code SET NX}, {@code MGET}, {@code DEL}, {@code EXISTS}, the compare-and-delete unlock script and
+ * pub/sub. Messages are delivered in order on one background thread, like a listener container does.
+ * Expiry is ignored.
+ */
+public final class InMemoryRedis {
+    
+    private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final InvocationHandler handler = this::invoke;
+    private final ExecutorService delivery = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "in-memory-redis-pubsub");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public RedisConnectionFactory connectionFactory() {
+        return (RedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnectionFactory.class}, handler);
+    }
+    
+    /**
+     * @return Listener container that receives this instance's publications, one per simulated node
+     */
+    public RedisMessageListenerContainer listenerContainer() {
+        return new RedisMessageListenerContainer() {
+            @Override
+            public void addMessageListener(MessageListener listener, Topic topic) {
+                subscriptions.add(new Subscription(listener, topic.getTopic()));
+            }
+            
+            @Override
+            public void removeMessageListener(MessageListener listener, Topic topic) {
+                subscriptions.removeIf(s -> s.listener() == listener && s.channel().equals(topic.getTopic()));
+            }
+        };
+    }
+    
+    public Set<String> keys() {
+        return values.keySet();
+    }
+    
+    public byte[] get(String key) {
+        return values.get(key);
+    }
+    
+    /**
+     * Waits until every message published so far has been delivered.
+     */
+    public void awaitDelivery() {
+        try {
+            delivery.submit(() -> {
+            }).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * @return Values written so far, lock keys included
+     */
+    public int writes() {
+        return writes.get();
+    }
+    
+    private Object invoke(Object proxy, Method method, Object[] args) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType.isInterface() && returnType.getSimpleName().endsWith("Commands")
+                && method.getParameterCount() == 0) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{returnType}, handler);
+        }
+        return switch (method.getName()) {
+            case "getConnection" -> Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RedisConnection.class}, handler);
+            case "getConvertPipelineAndTxResults" -> true;
+            case "translateExceptionIfPossible", "close" -> null;
+            case "isClosed", "isPipelined", "isQueueing" -> false;
+            case "get" -> values.get(key(args[0]));
+            case "mGet" -> {
+                List<byte[]> found = new ArrayList<>();
+                for (byte[] key : (byte[][]) args[0]) {
+                    found.add(values.get(key(key)));
+                }
+                yield found;
+            }
+            case "set" -> set(args);
+            case "setEx", "pSetEx" -> {
+                writes.incrementAndGet();
+                values.put(key(args[0]), (byte[]) args[2]);
+                yield true;
+            }
+            case "del" -> {
+                long deleted = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    deleted += values.remove(key(key)) != null ? 1 : 0;
+                }
+                yield deleted;
+            }
+            case "exists" -> args[0] instanceof byte[] key
+                    ? (Object) values.containsKey(key(key))
+                    : (Object) Arrays.stream((byte[][]) args[0]).filter(key -> values.containsKey(key(key))).count();
+            case "eval", "evalSha" -> unlock((byte[][]) args[3]);
+            case "publish" -> publish((byte[]) args[0], (byte[]) args[1]);
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "InMemoryRedis." + method.getDeclaringClass().getSimpleName();
+            default -> throw new UnsupportedOperationException(method.toString());
+        };
+    }
+    
+    private boolean set(Object[] args) {
+        String key = key(args[0]);
+        byte[] value = (byte[]) args[1];
+        writes.incrementAndGet();
+        if (args.length > 3 && args[3] == RedisStringCommands.SetOption.SET_IF_ABSENT) {
+            return values.putIfAbsent(key, value) == null;
+        }
+        values.put(key, value);
+        return true;
+    }
+    
+    /**
+     * The only script in use: delete the key if it still holds the given value.
+     */
+    private long unlock(byte[][] keysAndArgs) {
+        String key = key(keysAndArgs[0]);
+        byte[] expected = keysAndArgs[1];
+        boolean[] deleted = new boolean[1];
+        values.computeIfPresent(key, (k, v) -> {
+            deleted[0] = Arrays.equals(v, expected);
+            return deleted[0] ? null : v;
+        });
+        return deleted[0] ? 1 : 0;
+    }
+    
+    private long publish(byte[] channel, byte[] body) {
+        String name = key(channel);
+        long receivers = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.channel().equals(name)) {
+                delivery.execute(() -> subscription.listener().onMessage(new DefaultMessage(channel, body), null));
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+    
+    private static String key(Object raw) {
+        return new String((byte[]) raw, StandardCharsets.UTF_8);
+    }
+    
+    private record Subscription(MessageListener listener, String channel) {
+    }
+}
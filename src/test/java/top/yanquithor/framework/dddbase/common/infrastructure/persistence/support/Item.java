@@ -0,0 +1,26 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import top.yanquithor.framework.dddbase.common.domain.model.Aggregate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class Item implements Aggregate {
+    
+    private long id;
+    private String name;
+    private Integer qty;
+    private String status;
+    private Long version;
+    
+    public Item(long id, String name) {
+        this.id = id;
+        this.name = name;
+        this.qty = 1;
+        this.status = "active";
+        this.version = 0L;
+    }
+}
@@ -0,0 +1,23 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
+import lombok.Getter;
+import lombok.Setter;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.dataobject.BaseDO;
+
+@Getter
+@Setter
+@TableName("item")
+public class ItemDO extends BaseDO {
+    
+    @TableField
+    private String name;
+    
+    @TableField
+    private Integer qty;
+    
+    @Version
+    private Long version;
+}
@@ -0,0 +1,6 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.mapper.BaseMapperX;
+
+public interface ItemMapper extends BaseMapperX<ItemDO> {
+}
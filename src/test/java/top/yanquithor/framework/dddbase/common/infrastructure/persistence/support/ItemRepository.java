@@ -0,0 +1,11 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.persistence.support;
+
+import top.yanquithor.framework.dddbase.common.infrastructure.converter.GeneratedConverter;
+import top.yanquithor.framework.dddbase.common.infrastructure.persistence.repository.CommonRepository;
+
+public class ItemRepository extends CommonRepository<ItemDO, Item, ItemMapper> {
+    
+    public ItemRepository(ItemMapper mapper) {
+        super(GeneratedConverter.of(ItemDO.class, Item.class), mapper);
+    }
+}
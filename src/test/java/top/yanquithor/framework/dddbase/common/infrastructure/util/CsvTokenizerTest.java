@@ -0,0 +1,205 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvTokenizerTest {
+    
+    @Test
+    void singleLineRecordsParseLikeTheLineParserTheyReplaced() throws IOException {
+        String[] lines = {
+                "a,b,c",
+                "",
+                ",",
+                "a,,c,",
+                "\"a,b\",c",
+                "\"say \"\"hi\"\"\",x",
+                "\"\"\"\"",
+                "\"\"",
+                "ab\"c,d\"e",
+                "naïve,東京,\"日本, 語\"",
+                "emoji 🎉,\"🎉\"\"🎉\"",
+                " padded , spaces ",
+        };
+        for (String line : lines) {
+            for (String lineBreak : new String[]{"\n", "\r\n", ""}) {
+                if (line.isEmpty() && lineBreak.isEmpty()) {
+                    continue; // No input at all, which neither parser sees as a record
+                }
+                assertThat(tokenize(line + lineBreak)).as("%s followed by %s", line, lineBreak.replace("\r", "\\r").replace("\n", "\\n"))
+                        .containsExactly(parseLine(line));
+            }
+        }
+    }
+    
+    @Test
+    void quotedFieldsMaySpanLines() throws IOException {
+        assertThat(tokenize("1,\"first\nsecond\",x\n2,\"a\r\nb\",y\r\n3,\"\n\",z"))
+                .containsExactly(List.of("1", "first\nsecond", "x"), List.of("2", "a\r\nb", "y"), List.of("3", "\n", "z"));
+    }
+    
+    @Test
+    void onlyTheCarriageReturnBeforeTheLineBreakIsTrimmed() throws IOException {
+        assertThat(tokenize("a\r\nb\r\r\n\"c\r\"\r\nd,\r\n"))
+                .containsExactly(List.of("a"), List.of("b\r"), List.of("c\r"), List.of("d", ""));
+    }
+    
+    @Test
+    void aDoubledQuoteInsideQuotesIsOneQuote() throws IOException {
+        assertThat(tokenize("\"a\"\"b\",\"\"\"\",\"\"\"\"\"\",\"\"\n"))
+                .containsExactly(List.of("a\"b", "\"", "\"\"", ""));
+    }
+    
+    @Test
+    void nonAsciiFieldsAreDecodedAsUtf8() throws IOException {
+        try (CsvTokenizer tokens = tokenizer("ascii,ümlaut,\"東京, 日本\",\"🎉\"\n")) {
+            assertThat(tokens.next()).isTrue();
+            assertThat(tokens.fieldCount()).isEqualTo(4);
+            assertThat(tokens.field(0)).hasToString("ascii");
+            assertThat(tokens.field(1)).hasToString("ümlaut");
+            assertThat(tokens.field(2)).hasToString("東京, 日本");
+            assertThat(tokens.field(3)).hasToString("🎉");
+            assertThat(tokens.field(1).length()).isEqualTo(6);
+            assertThat(tokens.field(1).charAt(0)).isEqualTo('ü');
+            assertThat(tokens.field(3).length()).isEqualTo(2);
+            assertThat(tokens.next()).isFalse();
+        }
+    }
+    
+    @Test
+    void slicesReadThePlainFieldsInPlace() throws IOException {
+        try (CsvTokenizer tokens = tokenizer("abc,\"q\"\n")) {
+            assertThat(tokens.next()).isTrue();
+            CharSequence plain = tokens.field(0);
+            assertThat(plain.length()).isEqualTo(3);
+            assertThat(plain.charAt(2)).isEqualTo('c');
+            assertThat(plain.subSequence(1, 3)).hasToString("bc");
+            assertThat(tokens.fieldAsString(1)).isEqualTo("q");
+        }
+    }
+    
+    @Test
+    void fieldsSurviveABufferThatGrowsAcrossManyRecords() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        List<List<String>> expected = new ArrayList<>();
+        String wide = "x".repeat(100_000);
+        for (int i = 0; i < 50; i++) {
+            String text = i % 10 == 0 ? wide + i : "v" + i;
+            csv.append(i).append(",\"").append(text).append("\"\n");
+            expected.add(List.of(String.valueOf(i), text));
+        }
+        
+        assertThat(tokenize(csv.toString())).isEqualTo(expected);
+    }
+    
+    @Test
+    void aRecordLongerThanTheMaximumRecordSizeFails() throws IOException {
+        String csv = "ok\n\"" + "abcdefghij".repeat(5_000) + "\nnever,reached\n";
+        try (CsvTokenizer tokens = new CsvTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ',', '"', 1_000)) {
+            assertThat(tokens.next()).isTrue();
+            assertThat(tokens.fieldAsString(0)).isEqualTo("ok");
+            assertThatThrownBy(tokens::next).isInstanceOf(IOException.class).hasMessageContaining("1000 bytes");
+        }
+    }
+    
+    @Test
+    void aRecordOfExactlyTheMaximumRecordSizeIsRead() throws IOException {
+        String csv = "x".repeat(9) + "\nyy\n";
+        try (CsvTokenizer tokens = new CsvTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ',', '"', 10)) {
+            assertThat(tokens.next()).isTrue();
+            assertThat(tokens.fieldAsString(0)).isEqualTo("x".repeat(9));
+            assertThat(tokens.next()).isTrue();
+            assertThat(tokens.fieldAsString(0)).isEqualTo("yy");
+            assertThat(tokens.next()).isFalse();
+        }
+    }
+    
+    @Test
+    void streamsThatReturnZeroBytesAreReadToTheEndWithoutSpinning() throws IOException {
+        byte[] data = "a,\"b,c\"\nx,y\n".getBytes(StandardCharsets.UTF_8);
+        int[] bulkReads = new int[1];
+        // Bulk reads never return data, as a non-blocking stream with nothing buffered may do
+        InputStream stalling = new InputStream() {
+            private int position;
+            
+            @Override
+            public int read() {
+                return position < data.length ? data[position++] & 0xff : -1;
+            }
+            
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                bulkReads[0]++;
+                return position < data.length ? 0 : -1;
+            }
+        };
+        
+        List<List<String>> records = new ArrayList<>();
+        try (CsvTokenizer tokens = new CsvTokenizer(stalling)) {
+            while (tokens.next()) {
+                records.add(List.of(tokens.fields()));
+            }
+        }
+        
+        assertThat(records).containsExactly(List.of("a", "b,c"), List.of("x", "y"));
+        // One bulk read per byte plus the end of input, never a retry loop
+        assertThat(bulkReads[0]).isLessThanOrEqualTo(data.length + 1);
+    }
+    
+    private static CsvTokenizer tokenizer(String csv) {
+        return new CsvTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static List<List<String>> tokenize(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvTokenizer tokens = tokenizer(csv)) {
+            while (tokens.next()) {
+                records.add(List.of(tokens.fields()));
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * The line parser {@code CsvUtils} used before the tokenizer, applied to lines from
+     * {@code BufferedReader.readLine()}, which strips the line break.
+     */
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder currentField = new StringBuilder();
+        boolean insideQuotes = false;
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (insideQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    currentField.append('"');
+                    i += 2;
+                } else {
+                    insideQuotes = !insideQuotes;
+                    i++;
+                }
+            } else if (c == ',' && !insideQuotes) {
+                fields.add(currentField.toString());
+                currentField.setLength(0);
+                i++;
+            } else {
+                currentField.append(c);
+                i++;
+            }
+        }
+        fields.add(currentField.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,108 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * How parsing a CSV file of about 85 MB scales with the parallelism of the {@link ParallelCsvReader} pool,
+ * in file order and unordered, against one {@link CsvTokenizer} reading the file sequentially.
+ * Parallelism above the machine's core count shows no further gain.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=top.yanquithor.framework.dddbase.common.infrastructure.util.ParallelCsvReaderBenchmark}
+ * or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelCsvReaderBenchmark {
+    
+    private static final int RECORDS = 1_000_000;
+    
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+    
+    private File file;
+    private ForkJoinPool pool;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("parallel-csv", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id,name,description,amount\n");
+            for (int i = 0; i < RECORDS; i++) {
+                writer.write(i + ",name" + i + ",\"a longer description, with a separator\nand a line break\","
+                        + (i * 31 % 10_000) + ".25\n");
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        file.delete();
+    }
+    
+    @Benchmark
+    public long ordered() {
+        return count(true);
+    }
+    
+    @Benchmark
+    public long unordered() {
+        return count(false);
+    }
+    
+    /**
+     * Baseline, does not use the pool.
+     */
+    @Benchmark
+    public long sequentialTokenizer() throws IOException {
+        long fields = 0;
+        try (CsvTokenizer tokens = new CsvTokenizer(new FileInputStream(file))) {
+            while (tokens.next()) {
+                fields += tokens.field(1).length();
+            }
+        }
+        return fields;
+    }
+    
+    private long count(boolean ordered) {
+        try (ParallelCsvReader reader = ParallelCsvReader.open(file, pool, ParallelCsvReader.DEFAULT_CHUNK_SIZE, ',', '"');
+             Stream<Integer> lengths = reader.stream(tokens -> tokens.field(1).length(), ordered)) {
+            return lengths.mapToLong(Integer::longValue).sum();
+        }
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParallelCsvReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,135 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelCsvReaderTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void quotedLineBreaksAcrossChunkBoundariesStayInTheirField() throws IOException {
+        String csv = sample(200);
+        File file = write(csv);
+        List<List<String>> expected = sequential(csv);
+        assertThat(expected).hasSize(200);
+        assertThat(expected.get(1)).containsExactly("1", "line one\nline two\n", "n1");
+        assertThat(expected.get(2)).containsExactly("2", "say \"hi\", then\r\nleave", "n2");
+        
+        // Tiny chunks put a boundary at every offset, inside and outside quotes, of some record
+        for (int chunkSize : new int[]{1, 2, 3, 5, 8, 13, 64, 1024}) {
+            try (ParallelCsvReader reader = ParallelCsvReader.open(file, pool, chunkSize, ',', '"')) {
+                assertThat(reader.header()).containsExactly("id", "text", "note");
+                assertThat(rows(reader, true)).as("chunk size %d", chunkSize).isEqualTo(expected);
+            }
+        }
+    }
+    
+    @Test
+    void unorderedOutputHoldsTheSameRowsAsOrderedOutput() throws IOException {
+        String csv = sample(500);
+        File file = write(csv);
+        
+        List<List<String>> ordered;
+        try (ParallelCsvReader reader = ParallelCsvReader.open(file, pool, 97, ',', '"')) {
+            ordered = rows(reader, true);
+        }
+        List<List<String>> unordered;
+        try (ParallelCsvReader reader = ParallelCsvReader.open(file, pool, 97, ',', '"')) {
+            unordered = rows(reader, false);
+        }
+        
+        assertThat(ordered).isEqualTo(sequential(csv));
+        assertThat(unordered).containsExactlyInAnyOrderElementsOf(ordered);
+    }
+    
+    @Test
+    void anEmptyFileHasNoHeaderAndNoRows() throws IOException {
+        try (ParallelCsvReader reader = ParallelCsvReader.open(write(""), pool, 4, ',', '"')) {
+            assertThat(reader.header()).isNull();
+            assertThat(rows(reader, true)).isEmpty();
+        }
+    }
+    
+    @Test
+    void aHeaderOnlyFileHasNoRows() throws IOException {
+        for (String csv : new String[]{"id,text", "id,text\n", "id,text\r\n"}) {
+            try (ParallelCsvReader reader = ParallelCsvReader.open(write(csv), pool, 2, ',', '"')) {
+                assertThat(reader.header()).containsExactly("id", "text");
+                assertThat(rows(reader, true)).isEmpty();
+                assertThat(rows(reader, false)).isEmpty();
+            }
+        }
+    }
+    
+    @Test
+    void theLastRecordNeedsNoLineBreak() throws IOException {
+        try (ParallelCsvReader reader = ParallelCsvReader.open(write("id,text\n1,\"a\nb\"\n2,c"), pool, 3, ',', '"')) {
+            assertThat(rows(reader, true)).containsExactly(List.of("1", "a\nb"), List.of("2", "c"));
+        }
+    }
+    
+    /**
+     * Records mixing plain fields, quoted separators, doubled quotes, quoted line breaks and non-ASCII text.
+     */
+    private static String sample(int records) {
+        StringBuilder csv = new StringBuilder("id,text,note\n");
+        for (int i = 0; i < records; i++) {
+            csv.append(i).append(',');
+            switch (i % 5) {
+                case 0 -> csv.append("plain").append(i);
+                case 1 -> csv.append("\"line one\nline two\n\"");
+                case 2 -> csv.append("\"say \"\"hi\"\", then\r\nleave\"");
+                case 3 -> csv.append("\"\n\n\"");
+                default -> csv.append("\"naïve, 東京\"");
+            }
+            csv.append(',').append(i % 3 == 0 ? "\"\"" : "n" + i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        return csv.toString();
+    }
+    
+    private File write(String csv) throws IOException {
+        Path file = Files.createTempFile(directory, "rows", ".csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+    
+    private static List<List<String>> rows(ParallelCsvReader reader, boolean ordered) {
+        try (Stream<List<String>> rows = reader.stream(tokens -> List.of(tokens.fields()), ordered)) {
+            return rows.toList();
+        }
+    }
+    
+    private static List<List<String>> sequential(String csv) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvTokenizer tokens = new CsvTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)))) {
+            tokens.next(); // Header
+            while (tokens.next()) {
+                rows.add(List.of(tokens.fields()));
+            }
+        }
+        return rows;
+    }
+}
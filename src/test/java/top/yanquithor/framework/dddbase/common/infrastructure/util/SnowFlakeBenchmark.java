@@ -0,0 +1,108 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the lock-free {@link SnowFlake} against the synchronized generator it replaced,
+ * with every core calling {@code nextId()} on one shared instance.
+ * Both are capped by the sequence space, 4096 IDs per millisecond in the default layout, so the interesting
+ * numbers are how close each gets to that cap and how the batched {@code nextIds} compares.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=top.yanquithor.framework.dddbase.common.infrastructure.util.SnowFlakeBenchmark}
+ * or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class SnowFlakeBenchmark {
+    
+    private SnowFlake lockFree;
+    private SynchronizedSnowFlake synchronizedBaseline;
+    
+    @Setup
+    public void setUp() {
+        lockFree = new SnowFlake(1, 0);
+        synchronizedBaseline = new SynchronizedSnowFlake(1);
+    }
+    
+    @Benchmark
+    public long lockFree() {
+        return lockFree.nextId();
+    }
+    
+    @Benchmark
+    public long[] lockFreeBatchOf64() {
+        return lockFree.nextIds(64);
+    }
+    
+    @Benchmark
+    public long synchronizedBaseline() {
+        return synchronizedBaseline.nextId();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SnowFlakeBenchmark.class.getSimpleName()).build()).run();
+    }
+    
+    /**
+     * The generator as it was before the CAS rewrite, kept as the baseline.
+     */
+    static final class SynchronizedSnowFlake {
+        
+        private static final long EPOCH = LocalDateTime.of(2025, 1, 1, 0, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        private static final int WORKER_ID_BITS = 5;
+        private static final int SEQUENCE_BITS = 12;
+        private static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS);
+        private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
+        private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+        
+        private final long workerId;
+        private long sequence;
+        private long lastTimestamp = -1L;
+        
+        SynchronizedSnowFlake(long workerId) {
+            this.workerId = workerId;
+        }
+        
+        synchronized long nextId() {
+            long timestamp = System.currentTimeMillis();
+            if (timestamp < lastTimestamp) {
+                throw new IllegalStateException("Clock moved backwards");
+            }
+            if (lastTimestamp == timestamp) {
+                sequence = (sequence + 1) & MAX_SEQUENCE;
+                if (sequence == 0) {
+                    while (timestamp <= lastTimestamp) {
+                        timestamp = System.currentTimeMillis();
+                    }
+                }
+            } else {
+                sequence = 0;
+            }
+            lastTimestamp = timestamp;
+            return ((timestamp - EPOCH) << TIMESTAMP_LEFT_SHIFT) | (workerId << WORKER_ID_SHIFT) | sequence;
+        }
+    }
+}
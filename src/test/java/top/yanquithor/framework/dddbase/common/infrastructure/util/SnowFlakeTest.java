@@ -0,0 +1,99 @@
+package top.yanquithor.framework.dddbase.common.infrastructure.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnowFlakeTest {
+    
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+    
+    @Test
+    void idsAreUniqueAndIncreasingPerThreadUnderContention() throws Exception {
+        SnowFlake snowFlake = new SnowFlake(1, 0);
+        
+        List<long[]> perThread = generateConcurrently(() -> {
+            long[] ids = new long[IDS_PER_THREAD];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = snowFlake.nextId();
+            }
+            return ids;
+        });
+        
+        assertUniqueAndIncreasing(perThread);
+    }
+    
+    @Test
+    void batchedAndSingleIdsDoNotOverlapUnderContention() throws Exception {
+        SnowFlake snowFlake = new SnowFlake(1, 0);
+        
+        List<long[]> perThread = generateConcurrently(() -> {
+            long[] ids = new long[IDS_PER_THREAD];
+            int filled = 0;
+            while (filled < ids.length) {
+                if (filled % 3 == 0) {
+                    ids[filled++] = snowFlake.nextId();
+                } else {
+                    long[] batch = snowFlake.nextIds(Math.min(100, ids.length - filled));
+                    System.arraycopy(batch, 0, ids, filled, batch.length);
+                    filled += batch.length;
+                }
+            }
+            return ids;
+        });
+        
+        assertUniqueAndIncreasing(perThread);
+    }
+    
+    @Test
+    void tolerantModeStaysUniqueWhenBorrowingAhead() throws Exception {
+        SnowFlake snowFlake = new SnowFlake(1, 50);
+        
+        List<long[]> perThread = generateConcurrently(() -> snowFlake.nextIds(IDS_PER_THREAD));
+        
+        assertUniqueAndIncreasing(perThread);
+    }
+    
+    private static List<long[]> generateConcurrently(Callable<long[]> generator) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return generator.call();
+                }));
+            }
+            start.countDown();
+            List<long[]> results = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+    
+    private static void assertUniqueAndIncreasing(List<long[]> perThread) {
+        Set<Long> seen = new HashSet<>();
+        for (long[] ids : perThread) {
+            for (int i = 0; i < ids.length; i++) {
+                assertThat(seen.add(ids[i])).as("duplicate id %d", ids[i]).isTrue();
+                if (i > 0) {
+                    assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                }
+            }
+        }
+        assertThat(seen).hasSize(THREADS * IDS_PER_THREAD);
+    }
+}